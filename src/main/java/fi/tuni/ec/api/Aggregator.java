@@ -0,0 +1,435 @@
+package fi.tuni.ec.api;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Groups points into time buckets and aggregates every metric in a single pass.
+ * Buckets are either a fixed step, where a point's bucket is found by division, or calendar
+ * boundaries such as months, where it is found by binary search. All arithmetic is done on
+ * epoch minutes (UTC). Large inputs can be split and aggregated in parallel on the common
+ * fork/join pool, the partial results are then combined. Points can also be added one at a
+ * time, e.g. straight from a parser, so that they never have to be collected into a list.
+ */
+public class Aggregator {
+
+  // Below this many points splitting costs more than it saves
+  private static final int PARALLEL_THRESHOLD = 8192;
+
+  private final long startMinute;
+  private final int stepMinutes;
+  private final long[] boundaries;
+  private final int size;
+
+  private Aggregator(long startMinute, int stepMinutes, long[] boundaries, int size) {
+    this.startMinute = startMinute;
+    this.stepMinutes = stepMinutes;
+    this.boundaries = boundaries;
+    this.size = size;
+  }
+
+  /**
+   * Create buckets of a fixed length.
+   *
+   * @param startMinute Start of the first bucket in minutes since epoch (UTC)
+   * @param stepMinutes Length of a bucket in minutes
+   * @param count Number of buckets
+   * @return Aggregator for the buckets
+   */
+  public static Aggregator fixed(long startMinute, int stepMinutes, int count) {
+    if (stepMinutes <= 0) {
+      throw new IllegalArgumentException("Step must be positive: " + stepMinutes);
+    }
+    return new Aggregator(startMinute, stepMinutes, null, count);
+  }
+
+  /**
+   * Create one bucket per day.
+   *
+   * @param from First day
+   * @param to Last day
+   * @return Aggregator for the days
+   */
+  public static Aggregator days(LocalDate from, LocalDate to) {
+    return fixed(from.toEpochDay() * 1440, 1440, (int) (to.toEpochDay() - from.toEpochDay()) + 1);
+  }
+
+  /**
+   * Create one bucket per calendar month.
+   *
+   * @param from First month
+   * @param to Last month
+   * @return Aggregator for the months
+   */
+  public static Aggregator months(YearMonth from, YearMonth to) {
+    int count = (int) (to.getYear() * 12L + to.getMonthValue()
+        - from.getYear() * 12L - from.getMonthValue()) + 1;
+    long[] boundaries = new long[count + 1];
+    for (int i = 0; i <= count; i++) {
+      boundaries[i] = from.plusMonths(i).atDay(1).toEpochDay() * 1440;
+    }
+    return new Aggregator(boundaries[0], 0, boundaries, count);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Create empty aggregates of the buckets, for adding points one at a time.
+   *
+   * @return Aggregates without data
+   */
+  public Aggregates newAggregates() {
+    return new Aggregates(this);
+  }
+
+  /**
+   * Start of a bucket.
+   *
+   * @param i Index of the bucket
+   * @return Start of the bucket in minutes since epoch (UTC)
+   */
+  public long startOf(int i) {
+    return boundaries == null ? startMinute + (long) i * stepMinutes : boundaries[i];
+  }
+
+  /**
+   * Index of the bucket containing the given time.
+   *
+   * @param epochMinute Time in minutes since epoch (UTC)
+   * @return Index of the bucket, -1 if the time is outside every bucket
+   */
+  public int bucketOf(long epochMinute) {
+    if (boundaries == null) {
+      long index = Math.floorDiv(epochMinute - startMinute, stepMinutes);
+      return index >= 0 && index < size ? (int) index : -1;
+    }
+    int index = Arrays.binarySearch(boundaries, epochMinute);
+    // Exact hits are the start of a bucket, otherwise the bucket is the one before the insertion
+    index = index >= 0 ? index : -index - 2;
+    return index >= 0 && index < size ? index : -1;
+  }
+
+  /**
+   * Aggregate a list of data. Points outside the buckets are ignored.
+   *
+   * @param dataList Data in any order
+   * @return Aggregates of every bucket
+   */
+  public Aggregates aggregate(List<ApiData> dataList) {
+    return aggregate(dataList, 0, dataList.size());
+  }
+
+  /**
+   * Aggregate a series. Points outside the buckets are ignored.
+   *
+   * @param series Series to aggregate
+   * @return Aggregates of every bucket
+   */
+  public Aggregates aggregate(TimeSeries series) {
+    Aggregates result = new Aggregates(this);
+    double[] price = series.getPrice();
+    double[] usage = series.getUsage();
+    double[] temperature = series.getTemperature();
+    for (int i = 0; i < series.size(); i++) {
+      int bucket = bucketOf(series.minuteAt(i));
+      if (bucket >= 0 && !(Double.isNaN(price[i]) && Double.isNaN(usage[i]))) {
+        result.add(bucket, price[i], usage[i], temperature[i], series.getStepMinutes());
+      }
+    }
+    return result;
+  }
+
+  private Aggregates aggregate(List<ApiData> dataList, int from, int to) {
+    Aggregates result = new Aggregates(this);
+    for (int i = from; i < to; i++) {
+      ApiData data = dataList.get(i);
+      int bucket = bucketOf(TimeSeries.toEpochMinute(data.date));
+      // Points without price and usage cover no time, as in the series path
+      if (bucket >= 0 && !(Double.isNaN(data.price) && Double.isNaN(data.usage))) {
+        result.add(
+            bucket,
+            data.price,
+            data.usage,
+            data.temperatureMean == null ? Double.NaN : data.temperatureMean,
+            data.interval == null ? 60 : data.interval);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Aggregate a list of data, splitting large lists over the fork/join pool.
+   *
+   * @param dataList Data in any order
+   * @return Aggregates of every bucket
+   */
+  public Aggregates aggregateParallel(List<ApiData> dataList) {
+    if (dataList.size() < PARALLEL_THRESHOLD) {
+      return aggregate(dataList);
+    }
+    return ForkJoinPool.commonPool().invoke(new AggregateTask(dataList, 0, dataList.size()));
+  }
+
+  /**
+   * Aggregates a range of a list, splitting it in half until it is small enough.
+   */
+  private class AggregateTask extends RecursiveTask<Aggregates> {
+    private static final long serialVersionUID = 1L;
+
+    // Tasks only run in the pool and are never serialized
+    private final transient List<ApiData> dataList;
+    private final int from;
+    private final int to;
+
+    AggregateTask(List<ApiData> dataList, int from, int to) {
+      this.dataList = dataList;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected Aggregates compute() {
+      if (to - from < PARALLEL_THRESHOLD) {
+        return aggregate(dataList, from, to);
+      }
+      int middle = (from + to) >>> 1;
+      AggregateTask left = new AggregateTask(dataList, from, middle);
+      left.fork();
+      Aggregates right = new AggregateTask(dataList, middle, to).compute();
+      return left.join().combine(right);
+    }
+  }
+
+  /**
+   * Aggregated metrics of every bucket.
+   * Sums and counts are kept instead of means so partial results can be combined exactly.
+   * Missing values (NaN) are left out of every metric.
+   */
+  public static class Aggregates {
+    private final Aggregator buckets;
+    final double[] priceSum;
+    final int[] priceCount;
+    final double[] minPrice;
+    final double[] maxPrice;
+    final double[] usageSum;
+    final int[] usageCount;
+    final double[] temperatureSum;
+    final int[] temperatureCount;
+    final long[] coveredMinutes;
+    // Zone mean price times zone usage and the usage summed over merged zones
+    final double[] zonePriceSum;
+    final double[] zoneUsageSum;
+    // Coarsest resolution of the price points added
+    private int priceInterval = 0;
+    // Set once other zones are merged in, the mean price is then weighted by zone usage
+    private boolean zonesMerged = false;
+
+    private Aggregates(Aggregator buckets) {
+      int size = buckets.size();
+      this.buckets = buckets;
+      this.priceSum = new double[size];
+      this.priceCount = new int[size];
+      this.minPrice = new double[size];
+      this.maxPrice = new double[size];
+      this.usageSum = new double[size];
+      this.usageCount = new int[size];
+      this.temperatureSum = new double[size];
+      this.temperatureCount = new int[size];
+      this.coveredMinutes = new long[size];
+      this.zonePriceSum = new double[size];
+      this.zoneUsageSum = new double[size];
+      Arrays.fill(minPrice, Double.NaN);
+      Arrays.fill(maxPrice, Double.NaN);
+    }
+
+    private void add(int i, double price, double usage, double temperature, int interval) {
+      if (!Double.isNaN(price)) {
+        addPriceAt(i, price);
+      }
+      if (!Double.isNaN(usage)) {
+        usageSum[i] += usage;
+        usageCount[i]++;
+      }
+      if (!Double.isNaN(temperature)) {
+        temperatureSum[i] += temperature;
+        temperatureCount[i]++;
+      }
+      coveredMinutes[i] += interval;
+    }
+
+    private void addPriceAt(int i, double price) {
+      priceSum[i] += price;
+      priceCount[i]++;
+      minPrice[i] = Double.isNaN(minPrice[i]) ? price : Math.min(minPrice[i], price);
+      maxPrice[i] = Double.isNaN(maxPrice[i]) ? price : Math.max(maxPrice[i], price);
+    }
+
+    /**
+     * Add a single price point. The covered minutes of a bucket follow its price points.
+     *
+     * @param epochMinute Time of the point in minutes since epoch (UTC)
+     * @param interval Resolution of the point in minutes
+     * @param price The price, NaN is ignored
+     */
+    public void addPrice(long epochMinute, int interval, double price) {
+      int i = buckets.bucketOf(epochMinute);
+      if (i < 0 || Double.isNaN(price)) {
+        return;
+      }
+      addPriceAt(i, price);
+      coveredMinutes[i] += interval;
+      priceInterval = Math.max(priceInterval, interval);
+    }
+
+    /**
+     * Add a single usage point.
+     *
+     * @param epochMinute Time of the point in minutes since epoch (UTC)
+     * @param usage The usage, NaN is ignored
+     */
+    public void addUsage(long epochMinute, double usage) {
+      int i = buckets.bucketOf(epochMinute);
+      if (i >= 0 && !Double.isNaN(usage)) {
+        usageSum[i] += usage;
+        usageCount[i]++;
+      }
+    }
+
+    /**
+     * Add a single temperature.
+     *
+     * @param epochMinute Time of the temperature in minutes since epoch (UTC)
+     * @param temperature The temperature, NaN is ignored
+     */
+    public void addTemperature(long epochMinute, double temperature) {
+      int i = buckets.bucketOf(epochMinute);
+      if (i >= 0 && !Double.isNaN(temperature)) {
+        temperatureSum[i] += temperature;
+        temperatureCount[i]++;
+      }
+    }
+
+    /**
+     * Coarsest resolution of the price points added one at a time.
+     *
+     * @return Resolution in minutes, 0 if no price was added
+     */
+    public int getPriceInterval() {
+      return priceInterval;
+    }
+
+    /**
+     * Add the aggregates of another part of the same series, e.g. another chunk of time.
+     *
+     * @param other Aggregates of the same buckets
+     * @return These aggregates
+     */
+    Aggregates combine(Aggregates other) {
+      priceInterval = Math.max(priceInterval, other.priceInterval);
+      for (int i = 0; i < size(); i++) {
+        priceSum[i] += other.priceSum[i];
+        priceCount[i] += other.priceCount[i];
+        if (other.priceCount[i] > 0) {
+          minPrice[i] = Double.isNaN(minPrice[i])
+              ? other.minPrice[i] : Math.min(minPrice[i], other.minPrice[i]);
+          maxPrice[i] = Double.isNaN(maxPrice[i])
+              ? other.maxPrice[i] : Math.max(maxPrice[i], other.maxPrice[i]);
+        }
+        usageSum[i] += other.usageSum[i];
+        usageCount[i] += other.usageCount[i];
+        temperatureSum[i] += other.temperatureSum[i];
+        temperatureCount[i] += other.temperatureCount[i];
+        coveredMinutes[i] += other.coveredMinutes[i];
+        zonePriceSum[i] += other.zonePriceSum[i];
+        zoneUsageSum[i] += other.zoneUsageSum[i];
+      }
+      zonesMerged |= other.zonesMerged;
+      return this;
+    }
+
+    /**
+     * Add the aggregates of another zone over the same time. Usage is summed over the zones and
+     * the mean price is weighted by the usage of each zone, as in SeriesMerger.mergeZones.
+     * Where the usage of the zones is unknown the prices are averaged. Covered time is not added
+     * up since the zones overlap in time.
+     *
+     * @param other Aggregates of a single zone over the same buckets
+     * @return These aggregates
+     */
+    Aggregates mergeZone(Aggregates other) {
+      if (!zonesMerged) {
+        addZoneWeights(this);
+        zonesMerged = true;
+      }
+      long[] covered = coveredMinutes.clone();
+      combine(other);
+      addZoneWeights(other);
+      for (int i = 0; i < size(); i++) {
+        coveredMinutes[i] = Math.max(covered[i], other.coveredMinutes[i]);
+      }
+      return this;
+    }
+
+    private void addZoneWeights(Aggregates zone) {
+      for (int i = 0; i < size(); i++) {
+        if (zone.priceCount[i] > 0 && zone.usageSum[i] > 0) {
+          zonePriceSum[i] += zone.priceSum[i] / zone.priceCount[i] * zone.usageSum[i];
+          zoneUsageSum[i] += zone.usageSum[i];
+        }
+      }
+    }
+
+    public int size() {
+      return priceSum.length;
+    }
+
+    public long getStartMinute(int i) {
+      return buckets.startOf(i);
+    }
+
+    /**
+     * Mean price of a bucket, weighted by the usage of each zone once zones are merged.
+     *
+     * @param i Index of the bucket
+     * @return The mean price, NaN if the bucket has no price
+     */
+    public double getMeanPrice(int i) {
+      if (zonesMerged && zoneUsageSum[i] > 0) {
+        return zonePriceSum[i] / zoneUsageSum[i];
+      }
+      return priceCount[i] > 0 ? priceSum[i] / priceCount[i] : Double.NaN;
+    }
+
+    public double getMinPrice(int i) {
+      return minPrice[i];
+    }
+
+    public double getMaxPrice(int i) {
+      return maxPrice[i];
+    }
+
+    public double getUsage(int i) {
+      return usageCount[i] > 0 ? usageSum[i] : Double.NaN;
+    }
+
+    public double getMeanTemperature(int i) {
+      return temperatureCount[i] > 0 ? temperatureSum[i] / temperatureCount[i] : Double.NaN;
+    }
+
+    /**
+     * Check whether any point fell into a bucket.
+     *
+     * @param i Index of the bucket
+     * @return true if the bucket has data
+     */
+    public boolean hasData(int i) {
+      return coveredMinutes[i] > 0;
+    }
+  }
+}
@@ -1,22 +1,32 @@
 package fi.tuni.ec.api;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URI;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import javafx.util.Pair;
 import javax.xml.parsers.DocumentBuilderFactory;
 import org.w3c.dom.Document;
@@ -30,8 +40,54 @@ public class ApiService {
 
   private static final String API_URL = "https://web-api.tp.entsoe.eu/api";
   private static String apiKey;
-  private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(
-      "yyyy-MM-dd'T'HH:mm'Z'");
+  private static final DateTimeFormatter periodFormatter = DateTimeFormatter.ofPattern(
+      "yyyyMMddHHmm");
+  private static final DateTimeFormatter dayFormatter = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+  // Shared executor for concurrent fetches, one virtual thread per request
+  private static final ExecutorService fetchExecutor =
+      Executors.newVirtualThreadPerTaskExecutor();
+
+  // Identical requests in flight at the same time share one call, across all services
+  private static final SingleFlight<String, List<ApiData>> documentFlights = new SingleFlight<>();
+  private static final SingleFlight<String, Map<String, Double>> temperatureFlights =
+      new SingleFlight<>();
+  private static final SingleFlight<String, HourlyTemperature> hourlyFlights =
+      new SingleFlight<>();
+
+  // Send the requests of a fetch at the same time instead of one after another
+  private boolean concurrentFetch = true;
+  // Overall deadline for all requests of a single fetchData call
+  private Duration fetchTimeout = Duration.ofSeconds(30);
+
+  // How load is combined when it has a finer resolution than price
+  private SeriesMerger.LoadResampling loadResampling = SeriesMerger.LoadResampling.MEAN;
+  // Priority class of this service's ENTSO-E requests
+  private RequestScheduler.Priority priority = RequestScheduler.Priority.INTERACTIVE;
+  // Maximum number of zones of a multi-zone country fetched at once
+  private int maxZoneParallelism = 4;
+  // Parser used for ENTSO-E documents
+  private ParserType parserType = ParserType.STAX;
+
+  private final HttpTransport transport;
+  // Rate limits and retries ENTSO-E requests, shared so the quota covers all services
+  private final RequestScheduler scheduler;
+  // Raw ENTSO-E responses, null when caching is disabled
+  private final ResponseCache responseCache;
+  // Parsed values of past periods, read before fetching and written after, null to disable
+  private final SeriesStore seriesStore;
+  // Recently fetched series kept in memory, null to disable
+  private SeriesCache seriesCache;
+  // Open-Meteo client with a per-location, per-day cache
+  private TemperatureClient temperatureClient;
+
+  /**
+   * Available parsers for ENTSO-E documents.
+   * DOM builds the whole document in memory, STAX streams the points as they are read.
+   */
+  public enum ParserType {
+    DOM, STAX
+  }
 
   // Map for storing area (country) codes
   // Countries with multiple zones store the prefix
@@ -80,11 +136,158 @@ public class ApiService {
     }
   }
 
+  /**
+   * Create a service using the shared HTTP transport and response cache.
+   */
+  public ApiService() {
+    this(HttpTransport.getShared(), ResponseCache.getShared(), SeriesStore.getShared());
+    this.seriesCache = SeriesCache.getShared();
+    this.temperatureClient = TemperatureClient.getShared();
+  }
+
+  /**
+   * Create a service using the given HTTP transport and response cache, without a store.
+   *
+   * @param transport Transport used for all API requests
+   * @param responseCache Cache for ENTSO-E responses, null to disable caching
+   */
+  public ApiService(HttpTransport transport, ResponseCache responseCache) {
+    this(transport, responseCache, null);
+  }
+
+  /**
+   * Create a service using the given HTTP transport, response cache and series store.
+   *
+   * @param transport Transport used for all API requests
+   * @param responseCache Cache for ENTSO-E responses, null to disable caching
+   * @param seriesStore Store for parsed values, null to disable it
+   */
+  public ApiService(
+      HttpTransport transport,
+      ResponseCache responseCache,
+      SeriesStore seriesStore) {
+    this(transport, responseCache, seriesStore, RequestScheduler.getShared());
+  }
+
+  /**
+   * Create a service using the given HTTP transport, response cache, series store and request
+   * scheduler.
+   *
+   * @param transport Transport used for all API requests
+   * @param responseCache Cache for ENTSO-E responses, null to disable caching
+   * @param seriesStore Store for parsed values, null to disable it
+   * @param scheduler Scheduler the ENTSO-E requests go through
+   */
+  public ApiService(
+      HttpTransport transport,
+      ResponseCache responseCache,
+      SeriesStore seriesStore,
+      RequestScheduler scheduler) {
+    this.transport = transport;
+    this.responseCache = responseCache;
+    this.seriesStore = seriesStore;
+    this.scheduler = scheduler;
+    this.temperatureClient = new TemperatureClient(transport,
+        TemperatureClient.countryLocations(), Duration.ofMinutes(15), Clock.systemUTC());
+  }
+
   // Helper method to get the API key
   public static String getApiKey() {
     return apiKey;
   }
 
+  /**
+   * Enable or disable concurrent fetching of price, usage and temperature data.
+   * Only the concurrency changes, sequential fetches go through the same store and chunking.
+   *
+   * @param concurrentFetch true to send the requests at once, false to send them in order
+   */
+  public void setConcurrentFetch(boolean concurrentFetch) {
+    this.concurrentFetch = concurrentFetch;
+  }
+
+  public boolean isConcurrentFetch() {
+    return concurrentFetch;
+  }
+
+  /**
+   * Set the overall deadline for a concurrent fetch.
+   *
+   * @param fetchTimeout Time after which pending requests are cancelled
+   */
+  public void setFetchTimeout(Duration fetchTimeout) {
+    if (fetchTimeout == null || fetchTimeout.isNegative() || fetchTimeout.isZero()) {
+      throw new IllegalArgumentException("Fetch timeout must be positive");
+    }
+    this.fetchTimeout = fetchTimeout;
+  }
+
+  public Duration getFetchTimeout() {
+    return fetchTimeout;
+  }
+
+  /**
+   * Select the parser used for ENTSO-E documents.
+   *
+   * @param parserType DOM or STAX
+   */
+  public void setParserType(ParserType parserType) {
+    this.parserType = parserType;
+  }
+
+  public ParserType getParserType() {
+    return parserType;
+  }
+
+  /**
+   * Set how many zones of a multi-zone country are fetched at once.
+   *
+   * @param maxZoneParallelism Maximum number of zones fetched in parallel
+   */
+  public void setMaxZoneParallelism(int maxZoneParallelism) {
+    if (maxZoneParallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1");
+    }
+    this.maxZoneParallelism = maxZoneParallelism;
+  }
+
+  /**
+   * Set the in-memory cache of fetched series.
+   *
+   * @param seriesCache Cache shared with other services, null to disable it
+   */
+  public void setSeriesCache(SeriesCache seriesCache) {
+    this.seriesCache = seriesCache;
+  }
+
+  public SeriesCache getSeriesCache() {
+    return seriesCache;
+  }
+
+  /**
+   * Set the priority class of this service's ENTSO-E requests.
+   * Background services, e.g. prefetching, should use BACKGROUND so they never delay requests
+   * a user is waiting for.
+   *
+   * @param priority Priority class of the requests
+   */
+  public void setPriority(RequestScheduler.Priority priority) {
+    this.priority = priority;
+  }
+
+  public RequestScheduler.Priority getPriority() {
+    return priority;
+  }
+
+  /**
+   * Select how load is resampled when it has a finer resolution than price.
+   *
+   * @param loadResampling SUM or MEAN of the points within a step
+   */
+  public void setLoadResampling(SeriesMerger.LoadResampling loadResampling) {
+    this.loadResampling = loadResampling;
+  }
+
   /**
    * Get the response stream from the API.
    *
@@ -120,16 +323,36 @@ public class ApiService {
     }
     query = String.format("%s&periodStart=%s&periodEnd=%s", query, periodStart, periodEnd);
 
-    URI uri = new URI(API_URL + query);
-    URL url = uri.toURL();
-    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-    connection.setRequestMethod("GET");
+    if (responseCache != null) {
+      byte[] cached = responseCache.get(areaDomain, docType, periodStart, periodEnd);
+      if (cached != null) {
+        return new ByteArrayInputStream(cached);
+      }
+    }
 
-    if (connection.getResponseCode() == 200) {
-      return connection.getInputStream();
-    } else {
-      throw new IOException("Failed to fetch pricing data: HTTP " + connection.getResponseCode());
+    InputStream stream;
+    String url = API_URL + query;
+    try {
+      stream = scheduler.execute(priority, () -> transport.get(url));
+    } catch (IOException e) {
+      throw new IOException("Failed to fetch " + docType + " data: " + e.getMessage(), e);
+    }
+    if (responseCache == null) {
+      return stream;
+    }
+
+    byte[] body;
+    try (stream) {
+      body = stream.readAllBytes();
     }
+    // Acknowledgement documents report errors or missing data, those are not cached
+    String head = new String(body, 0, Math.min(body.length, 256), StandardCharsets.UTF_8);
+    if (!head.contains("Acknowledgement_MarketDocument")) {
+      // Background requests fetch ahead of the user and count against the prefetch budget
+      responseCache.put(areaDomain, docType, periodStart, periodEnd, body,
+          priority == RequestScheduler.Priority.BACKGROUND);
+    }
+    return new ByteArrayInputStream(body);
   }
 
   /**
@@ -145,60 +368,461 @@ public class ApiService {
    */
   public List<ApiData> fetchData(String country, String periodStart, String periodEnd)
       throws Exception {
+    return fetchSeries(country, periodStart, periodEnd).toApiData();
+  }
+
+  /**
+   * Fetch data from the API as a columnar time series.
+   * Recently fetched series are returned from the in-memory cache, their arrays must not be
+   * modified.
+   *
+   * @param country The country code
+   * @param periodStart The start date of the period
+   * @param periodEnd The end date of the period
+   *
+   * @return TimeSeries of price, usage and temperature
+   *
+   * @throws Exception if an error occurs
+   */
+  public TimeSeries fetchSeries(String country, String periodStart, String periodEnd)
+      throws Exception {
+    if (seriesCache == null) {
+      return fetchSeriesUncached(country, periodStart, periodEnd);
+    }
+
+    String key = String.join("|", country, periodStart, periodEnd, loadResampling.name());
+    TimeSeries series = seriesCache.get(key);
+    if (series == null) {
+      series = fetchSeriesUncached(country, periodStart, periodEnd);
+      // Periods reaching today may still get new data
+      boolean live = periodEnd.substring(0, 8)
+          .compareTo(LocalDate.now(ZoneOffset.UTC).format(dayFormatter)) >= 0;
+      seriesCache.put(key, series, live);
+    }
+    return series;
+  }
 
-    // Get area domain and timezone info
+  private TimeSeries fetchSeriesUncached(String country, String periodStart, String periodEnd)
+      throws Exception {
+
+    // Get area domain and location
     String areaDomain = COUNTRY_CODES.get(country);
     Pair<Double, Double> coordinates = COUNTRY_COORDINATES.get(country);
-    String timezone = COUNTRY_TIMEZONES.get(country);
 
-    // Fetch price and usage data streams
-    InputStream priceStream = getResponseStream(areaDomain, "A44", periodStart, periodEnd);
-    InputStream usageStream = getResponseStream(areaDomain, "A65", periodStart, periodEnd);
+    if (areaDomain == null || coordinates == null) {
+      throw new IllegalArgumentException("Unknown country: " + country);
+    }
+    validatePeriod(periodStart, periodEnd);
+
+    if (!getZones(country).isEmpty()) {
+      return fetchZoneBreakdown(country, periodStart, periodEnd).getCountry();
+    }
+
+    // Send all three requests at once, each task parses its own response
+    List<Object> results = invokeAllWithDeadline(List.of(
+        () -> fetchDocument(areaDomain, "A44", periodStart, periodEnd, "price"),
+        () -> fetchDocument(areaDomain, "A65", periodStart, periodEnd, "usage"),
+        () -> fetchStoredTemperature(areaDomain, coordinates, periodStart, periodEnd)
+    ));
+
+    @SuppressWarnings("unchecked")
+    List<ApiData> priceData = (List<ApiData>) results.get(0);
+    @SuppressWarnings("unchecked")
+    List<ApiData> usageData = (List<ApiData>) results.get(1);
+    HourlyTemperature temperature = (HourlyTemperature) results.get(2);
 
-    // Fetch temperature data
-    Map<String, Double> temperatureData = fetchTemperatureData(
-        coordinates.getKey(), coordinates.getValue(), periodStart, periodEnd, timezone);
+    return combineApiData(priceData, usageData, temperature);
+  }
 
-    // Parse the responses into ApiData
-    List<ApiData> priceData = parseResponse(priceStream, "price", temperatureData);
-    List<ApiData> usageData = parseResponse(usageStream, "usage", null);
+  /**
+   * Fetch a period and aggregate it into buckets while the responses are parsed.
+   * Points go from the parser straight into the bucket sums, no list of points is built, so
+   * memory use depends on the number of buckets and not on the length of the period or the
+   * number of zones. Usage is weighted like in the merged series. For countries with several
+   * zones the price of a bucket is the mean price of each zone weighted by the zone's usage in
+   * the bucket. This equals aggregating fetchSeries where a bucket is a single step; in longer
+   * buckets fetchSeries weights every step by its own usage, so the two can differ slightly.
+   * Responses still go through the response cache, the series store and the series cache are
+   * not used since they keep every point.
+   *
+   * @param country The country code
+   * @param periodStart The start date of the period (format: yyyyMMddHHmm)
+   * @param periodEnd The end date of the period, inclusive (format: yyyyMMddHHmm)
+   * @param buckets Buckets to aggregate into
+   * @return Aggregates of every bucket
+   * @throws Exception if an error occurs
+   */
+  public Aggregator.Aggregates fetchAggregates(
+      String country,
+      String periodStart,
+      String periodEnd,
+      Aggregator buckets) throws Exception {
+    String areaDomain = COUNTRY_CODES.get(country);
+    Pair<Double, Double> coordinates = COUNTRY_COORDINATES.get(country);
+    if (areaDomain == null || coordinates == null) {
+      throw new IllegalArgumentException("Unknown country: " + country);
+    }
+    validatePeriod(periodStart, periodEnd);
 
-    // Close streams
-    priceStream.close();
-    usageStream.close();
+    List<String> areas = new ArrayList<>();
+    for (String zone : getZones(country)) {
+      areas.add(MULTI_ZONE_COUNTRIES.get(zone));
+    }
+    if (areas.isEmpty()) {
+      areas.add(areaDomain);
+    }
 
-    return combineApiData(priceData, usageData);
+    List<Callable<?>> tasks = new ArrayList<>();
+    for (String area : areas) {
+      tasks.add(() -> {
+        Aggregator.Aggregates prices = aggregateDocument(
+            area, "A44", periodStart, periodEnd, buckets, 0);
+        Aggregator.Aggregates usages = aggregateDocument(
+            area, "A65", periodStart, periodEnd, buckets, prices.getPriceInterval());
+        return prices.combine(usages);
+      });
+    }
+    tasks.add(() -> fetchStoredTemperature(areaDomain, coordinates, periodStart, periodEnd));
+    List<Object> results = invokeAllWithDeadline(tasks);
 
+    Aggregator.Aggregates total = (Aggregator.Aggregates) results.get(0);
+    for (int i = 1; i < areas.size(); i++) {
+      total.mergeZone((Aggregator.Aggregates) results.get(i));
+    }
+    ((HourlyTemperature) results.get(areas.size())).addTo(total);
+    return total;
   }
 
   /**
-   * Combine price and usage data into a single list.
+   * Fetch a document type in chunks and add its points to the buckets as they are parsed.
+   * Points outside their chunk are dropped so that overlapping responses are not counted twice.
    *
-   * @param priceData List of price data
-   * @param usageData List of usage data
+   * @param priceInterval Resolution of the prices in minutes, used to weight usage like the
+   *     merged series does, 0 if unknown
+   */
+  private Aggregator.Aggregates aggregateDocument(
+      String areaDomain,
+      String docType,
+      String periodStart,
+      String periodEnd,
+      Aggregator buckets,
+      int priceInterval) throws Exception {
+    List<String[]> chunks = RangePlanner.plan(docType, periodStart, periodEnd);
+    List<Callable<?>> tasks = new ArrayList<>();
+    for (int c = 0; c < chunks.size(); c++) {
+      long from = SeriesStore.toMinute(chunks.get(c)[0]);
+      long to = c + 1 < chunks.size()
+          ? SeriesStore.toMinute(chunks.get(c + 1)[0])
+          : SeriesStore.toMinute(periodEnd) + 1;
+      String[] chunk = chunks.get(c);
+      tasks.add(() -> {
+        Aggregator.Aggregates partial = buckets.newAggregates();
+        try (InputStream stream = getResponseStream(areaDomain, docType, chunk[0], chunk[1])) {
+          if (docType.equals("A44")) {
+            EntsoeStaxParser.parse(stream, "price.amount", (minute, interval, value) -> {
+              if (minute >= from && minute < to) {
+                partial.addPrice(minute, interval, value);
+              }
+            });
+          } else {
+            EntsoeStaxParser.parse(stream, "quantity", (minute, interval, value) -> {
+              if (minute >= from && minute < to) {
+                // With MEAN resampling a step of the merged series holds the mean of its loads
+                double weight = loadResampling == SeriesMerger.LoadResampling.MEAN
+                    ? (double) interval / Math.max(interval, priceInterval)
+                    : 1;
+                partial.addUsage(minute, value * weight);
+              }
+            });
+          }
+        }
+        return partial;
+      });
+    }
+
+    Aggregator.Aggregates total = buckets.newAggregates();
+    for (Object partial : invokeAllWithDeadline(tasks)) {
+      total.combine((Aggregator.Aggregates) partial);
+    }
+    return total;
+  }
+
+  /**
+   * Fetch and parse an ENTSO-E document type for a period.
+   * With a series store only the parts of the period before today that are not stored yet are
+   * fetched and written through, the rest is read from the store. From today on the period is
+   * always fetched since its data may still change.
    *
+   * @param areaDomain The area domain
+   * @param docType The document type (A44 or A65)
+   * @param periodStart The start date of the period
+   * @param periodEnd The end date of the period
+   * @param type The type of data to parse (price or usage)
    * @return List of ApiData
+   * @throws Exception if an error occurs
    */
-  private static List<ApiData> combineApiData(
-      List<ApiData> priceData,
-      List<ApiData> usageData) {
-    // Combine the two lists
-    int len = Math.min(priceData.size(), usageData.size());
+  private List<ApiData> fetchDocument(
+      String areaDomain,
+      String docType,
+      String periodStart,
+      String periodEnd,
+      String type) throws Exception {
+    if (seriesStore == null) {
+      return fetchDocumentChunks(areaDomain, docType, periodStart, periodEnd, type);
+    }
+
+    // Periods end at 23:00 by convention, the store works on whole days so that adjacent
+    // periods join without a gap
+    long fromMinute = SeriesStore.toMinute(periodStart);
+    long toMinute = Math.ceilDiv(SeriesStore.toMinute(periodEnd), 1440) * 1440;
+    long today = Math.clamp(seriesStore.todayMinute(), fromMinute, toMinute);
+
+    List<long[]> ranges = new ArrayList<>(seriesStore.missing(areaDomain, type, fromMinute, today));
+    // Read before the live range is added, unreadable parts join the ranges to fetch
+    final List<ApiData> dataList =
+        toApiData(readStored(areaDomain, type, fromMinute, today, ranges), type);
+    boolean live = today < toMinute;
+    if (live) {
+      ranges.add(new long[] {today, toMinute});
+    }
+    List<Callable<?>> tasks = new ArrayList<>();
+    for (long[] range : ranges) {
+      tasks.add(() -> fetchDocumentChunks(
+          areaDomain, docType, toPeriod(range[0]), toPeriod(range[1]), type));
+    }
+    List<Object> results = tasks.isEmpty() ? List.of() : invokeAllWithDeadline(tasks);
+
+    for (int i = 0; i < ranges.size(); i++) {
+      @SuppressWarnings("unchecked")
+      List<ApiData> rangeData = (List<ApiData>) results.get(i);
+      long[] range = ranges.get(i);
+      // Documents cover whole market days, keep only the points of the range
+      for (ApiData data : rangeData) {
+        long minute = TimeSeries.toEpochMinute(data.date);
+        if (minute >= range[0] && minute < range[1]) {
+          dataList.add(data);
+        }
+      }
+      if (!(live && i == ranges.size() - 1)) {
+        seriesStore.append(areaDomain, type, range[0], range[1], toPoints(rangeData, type));
+      }
+    }
+    dataList.sort(Comparator.comparing(data -> data.date));
+    return dataList;
+  }
+
+  /**
+   * Read the stored parts of a period. Parts that cannot be read are added to the missing
+   * ranges so that they are fetched instead.
+   *
+   * @param missing Parts of the period that are not stored, in order
+   * @return Stored points of the period
+   */
+  private List<SeriesStore.Point> readStored(
+      String areaDomain,
+      String metric,
+      long fromMinute,
+      long toMinute,
+      List<long[]> missing) {
+    IntervalSet gaps = new IntervalSet();
+    missing.forEach(range -> gaps.add(range[0], range[1]));
+    List<SeriesStore.Point> points = new ArrayList<>();
+    for (long[] part : gaps.missing(fromMinute, toMinute)) {
+      List<SeriesStore.Point> stored = seriesStore.read(areaDomain, metric, part[0], part[1]);
+      if (stored == null) {
+        missing.add(part);
+      } else {
+        points.addAll(stored);
+      }
+    }
+    missing.sort(Comparator.comparingLong(range -> range[0]));
+    return points;
+  }
+
+  private static String toPeriod(long epochMinute) {
+    return LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC).format(periodFormatter);
+  }
+
+  /**
+   * Fetch a document type for a period from the API in chunks.
+   */
+  private List<ApiData> fetchDocumentChunks(
+      String areaDomain,
+      String docType,
+      String periodStart,
+      String periodEnd,
+      String type) throws Exception {
+    List<String[]> chunks = RangePlanner.plan(docType, periodStart, periodEnd);
+    if (chunks.size() == 1) {
+      return fetchChunk(areaDomain, docType, periodStart, periodEnd, type);
+    }
+
+    List<Callable<?>> tasks = new ArrayList<>();
+    for (String[] chunk : chunks) {
+      tasks.add(() -> fetchChunk(areaDomain, docType, chunk[0], chunk[1], type));
+    }
 
     List<ApiData> dataList = new ArrayList<>();
-    for (int i = 0; i < len; i++) {
+    for (Object chunkData : invokeAllWithDeadline(tasks)) {
+      @SuppressWarnings("unchecked")
+      List<ApiData> chunkList = (List<ApiData>) chunkData;
+      dataList.addAll(chunkList);
+    }
+    return dataList;
+  }
+
+  private static List<SeriesStore.Point> toPoints(List<ApiData> dataList, String type) {
+    List<SeriesStore.Point> points = new ArrayList<>(dataList.size());
+    for (ApiData data : dataList) {
+      points.add(new SeriesStore.Point(
+          TimeSeries.toEpochMinute(data.date),
+          data.interval,
+          type.equals("price") ? data.price : data.usage));
+    }
+    return points;
+  }
+
+  private static List<ApiData> toApiData(List<SeriesStore.Point> points, String type) {
+    List<ApiData> dataList = new ArrayList<>(points.size());
+    for (SeriesStore.Point point : points) {
       ApiData data = new ApiData();
-      data.price = priceData.get(i).price;
-      data.usage = usageData.get(i).usage;
-      data.date = priceData.get(i).date;
-      data.interval = priceData.get(i).interval;
-      data.temperatureMean = priceData.get(i).temperatureMean;
+      if (type.equals("price")) {
+        data.price = point.getValue();
+      } else {
+        data.usage = point.getValue();
+      }
+      data.date = LocalDateTime.ofEpochSecond(point.getMinute() * 60, 0, ZoneOffset.UTC);
+      data.interval = point.getInterval();
       dataList.add(data);
     }
-
     return dataList;
   }
 
+  /**
+   * Fetch and parse a single ENTSO-E request.
+   * Concurrent calls for the same request wait for the one already in flight.
+   */
+  private List<ApiData> fetchChunk(
+      String areaDomain,
+      String docType,
+      String periodStart,
+      String periodEnd,
+      String type) throws Exception {
+    String key = String.join("|", areaDomain, docType, periodStart, periodEnd, type);
+    List<ApiData> dataList = documentFlights.run(key, () -> {
+      try (InputStream stream = getResponseStream(areaDomain, docType, periodStart, periodEnd)) {
+        return parseResponse(stream, type, null);
+      }
+    });
+    // The list is shared with the other callers of the same request
+    return new ArrayList<>(dataList);
+  }
+
+  /**
+   * Run the given tasks concurrently and wait for all of them within the fetch timeout.
+   * If one task fails or the deadline passes, the remaining tasks are cancelled. With
+   * concurrent fetching disabled the tasks run one after another on the calling thread.
+   *
+   * @param tasks Tasks to run
+   * @return Results in the same order as the tasks
+   * @throws Exception the first failure of a task, or IOException on timeout or if a task
+   *     returns null
+   */
+  private List<Object> invokeAllWithDeadline(List<Callable<?>> tasks) throws Exception {
+    if (!concurrentFetch) {
+      return invokeAllInOrder(tasks);
+    }
+    ExecutorCompletionService<Object> completionService =
+        new ExecutorCompletionService<>(fetchExecutor);
+    Map<Future<Object>, Integer> futures = new LinkedHashMap<>();
+    for (int i = 0; i < tasks.size(); i++) {
+      Callable<?> task = tasks.get(i);
+      futures.put(completionService.submit(task::call), i);
+    }
+
+    Object[] results = new Object[tasks.size()];
+    long deadline = System.nanoTime() + fetchTimeout.toNanos();
+    try {
+      for (int done = 0; done < tasks.size(); done++) {
+        long remaining = deadline - System.nanoTime();
+        Future<Object> future = completionService.poll(remaining, TimeUnit.NANOSECONDS);
+        if (future == null) {
+          throw new IOException("Fetch timed out after " + fetchTimeout.toMillis() + " ms");
+        }
+        results[futures.get(future)] = future.get();
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception exception) {
+        throw exception;
+      }
+      throw new IOException("Fetch failed", cause);
+    } finally {
+      // No-op for finished tasks, interrupts the ones still waiting on the network
+      futures.keySet().forEach(future -> future.cancel(true));
+    }
+
+    // A task may return null, which List.of would reject with a NullPointerException
+    for (int i = 0; i < results.length; i++) {
+      if (results[i] == null) {
+        throw new IOException("Fetch task " + i + " returned no result");
+      }
+    }
+    return new ArrayList<>(Arrays.asList(results));
+  }
+
+  private List<Object> invokeAllInOrder(List<Callable<?>> tasks) throws Exception {
+    List<Object> results = new ArrayList<>(tasks.size());
+    long deadline = System.nanoTime() + fetchTimeout.toNanos();
+    for (Callable<?> task : tasks) {
+      if (System.nanoTime() - deadline > 0) {
+        throw new IOException("Fetch timed out after " + fetchTimeout.toMillis() + " ms");
+      }
+      Object result = task.call();
+      if (result == null) {
+        throw new IOException("Fetch task " + results.size() + " returned no result");
+      }
+      results.add(result);
+    }
+    return results;
+  }
+
+  /**
+   * Check that the period strings are in yyyyMMddHHmm format.
+   *
+   * @throws IOException if either of the periods is malformed
+   */
+  private static void validatePeriod(String periodStart, String periodEnd) throws IOException {
+    try {
+      LocalDateTime.parse(periodStart, periodFormatter);
+      LocalDateTime.parse(periodEnd, periodFormatter);
+    } catch (DateTimeParseException e) {
+      throw new IOException("Invalid period: " + periodStart + " - " + periodEnd, e);
+    }
+  }
+
+  /**
+   * Combine price and usage data into a single series, joined on their timestamps.
+   *
+   * @param priceData List of price data
+   * @param usageData List of usage data
+   * @param temperature Hourly temperatures of the period (nullable if not needed)
+   *
+   * @return TimeSeries of the combined data
+   */
+  private TimeSeries combineApiData(
+      List<ApiData> priceData,
+      List<ApiData> usageData,
+      HourlyTemperature temperature) {
+    TimeSeries series = SeriesMerger.merge(priceData, usageData, loadResampling);
+
+    // Add temperature data if available
+    if (temperature != null) {
+      temperature.fill(series);
+    }
+    return series;
+  }
+
   /**
    * Fetch data for countries with multiple zones.
    *
@@ -213,37 +837,178 @@ public class ApiService {
       String country,
       String periodStart,
       String periodEnd) throws Exception {
+    return fetchZoneBreakdown(country, periodStart, periodEnd).getCountry().toApiData();
+  }
 
-    // List to store combined data
-    List<ApiData> combinedPriceData = new ArrayList<>();
-    List<ApiData> combinedUsageData = new ArrayList<>();
-
-    int i = 1;
-    // get prefix for the country
-    String areaPrefix = COUNTRY_CODES.get(country);
+  /**
+   * Fetch data for a country with multiple zones, keeping the series of each zone.
+   * Zones are fetched in parallel, at most maxZoneParallelism at a time.
+   *
+   * @param country The country code
+   * @param periodStart The start date of the period
+   * @param periodEnd The end date of the period
+   *
+   * @return Merged country series and the series of each zone
+   * @throws Exception if an error occurs
+   */
+  public MultiZoneData fetchZoneBreakdown(
+      String country,
+      String periodStart,
+      String periodEnd) throws Exception {
+    validatePeriod(periodStart, periodEnd);
+    List<String> zones = getZones(country);
+    if (zones.isEmpty()) {
+      throw new IllegalArgumentException("Not a multi-zone country: " + country);
+    }
+    Pair<Double, Double> coordinates = COUNTRY_COORDINATES.get(country);
 
-    String zone = areaPrefix + "_" + i;
-    // run until zone is not found
-    while (MULTI_ZONE_COUNTRIES.containsKey(zone)) {
+    // One task per zone, the semaphore bounds how many zones are fetched at once
+    Semaphore permits = new Semaphore(maxZoneParallelism);
+    List<Callable<?>> tasks = new ArrayList<>();
+    for (String zone : zones) {
       String areaDomain = MULTI_ZONE_COUNTRIES.get(zone);
+      tasks.add(() -> {
+        permits.acquire();
+        try {
+          List<ApiData> priceData =
+              fetchDocument(areaDomain, "A44", periodStart, periodEnd, "price");
+          List<ApiData> usageData =
+              fetchDocument(areaDomain, "A65", periodStart, periodEnd, "usage");
+          return combineApiData(priceData, usageData, null);
+        } finally {
+          permits.release();
+        }
+      });
+    }
+    if (coordinates != null) {
+      tasks.add(() -> fetchStoredTemperature(
+          COUNTRY_CODES.get(country), coordinates, periodStart, periodEnd));
+    }
 
-      InputStream priceStream = getResponseStream(areaDomain, "A44", periodStart, periodEnd);
-      InputStream usageStream = getResponseStream(areaDomain, "A65", periodStart, periodEnd);
+    List<Object> results = invokeAllWithDeadline(tasks);
 
-      List<ApiData> priceData = parseResponse(priceStream, "price", null);
-      combinedPriceData.addAll(priceData);
+    Map<String, TimeSeries> zoneSeries = new LinkedHashMap<>();
+    for (int i = 0; i < zones.size(); i++) {
+      zoneSeries.put(zones.get(i), (TimeSeries) results.get(i));
+    }
+    TimeSeries countrySeries = SeriesMerger.mergeZones(zoneSeries.values(), loadResampling);
+    if (coordinates != null) {
+      ((HourlyTemperature) results.get(zones.size())).fill(countrySeries);
+    }
+    return new MultiZoneData(countrySeries, zoneSeries);
+  }
 
-      List<ApiData> usageData = parseResponse(usageStream, "usage", null);
-      combinedUsageData.addAll(usageData);
+  /**
+   * Get the zones of a country split into several bidding zones.
+   *
+   * @param country The country name
+   * @return Zone names in order (e.g. SWE_1, SWE_2), empty for single zone countries
+   */
+  public static List<String> getZones(String country) {
+    List<String> zones = new ArrayList<>();
+    String areaPrefix = COUNTRY_CODES.get(country);
+    if (areaPrefix == null) {
+      return zones;
+    }
+    // run until zone is not found
+    int i = 1;
+    while (MULTI_ZONE_COUNTRIES.containsKey(areaPrefix + "_" + i)) {
+      zones.add(areaPrefix + "_" + i);
+      i++;
+    }
+    return zones;
+  }
 
-      priceStream.close();
-      usageStream.close();
+  /**
+   * Fetch hourly temperatures of a country. Past hours missing from the series store are
+   * fetched and written through, hours from today on are always fetched.
+   *
+   * @param areaDomain The area domain of the country, used as the store key
+   * @param coordinates Location of the country
+   * @param periodStart The start date of the period (format: yyyyMMddHHmm)
+   * @param periodEnd The end date of the period (format: yyyyMMddHHmm)
+   * @return Temperatures of every hour of the days of the period
+   * @throws Exception if an error occurs while fetching the data
+   */
+  private HourlyTemperature fetchStoredTemperature(
+      String areaDomain,
+      Pair<Double, Double> coordinates,
+      String periodStart,
+      String periodEnd) throws Exception {
+    if (seriesStore == null) {
+      return fetchHourlyTemperature(coordinates, periodStart, periodEnd);
+    }
 
-      i++;
-      zone = areaPrefix + "_" + i;
+    // Whole UTC days are fetched, the store keeps one point per hour. A period ending at
+    // midnight does not reach into the next day
+    LocalDate startDay = LocalDate.parse(periodStart.substring(0, 8), dayFormatter);
+    long fromMinute = startDay.toEpochDay() * 1440;
+    long toMinute = Math.ceilDiv(SeriesStore.toMinute(periodEnd), 1440) * 1440;
+    long today = Math.clamp(seriesStore.todayMinute(), fromMinute, toMinute);
+
+    List<long[]> ranges = new ArrayList<>(
+        seriesStore.missing(areaDomain, "temperature_hourly", fromMinute, today));
+    // Read before the live range is added, unreadable parts join the ranges to fetch
+    final List<SeriesStore.Point> stored =
+        readStored(areaDomain, "temperature_hourly", fromMinute, today, ranges);
+    boolean live = today < toMinute;
+    if (live) {
+      ranges.add(new long[] {today, toMinute});
+    }
+    // Ranges end at midnight, the API takes the last day of the range
+    List<Callable<?>> tasks = new ArrayList<>();
+    for (long[] range : ranges) {
+      tasks.add(() -> fetchHourlyTemperature(
+          coordinates, toPeriod(range[0]), toPeriod(range[1] - 1)));
+    }
+    List<Object> results = tasks.isEmpty() ? List.of() : invokeAllWithDeadline(tasks);
+
+    HourlyTemperature temperature =
+        new HourlyTemperature(fromMinute, (int) ((toMinute - fromMinute) / 60));
+    double[] values = temperature.getValues();
+    for (SeriesStore.Point point : stored) {
+      values[(int) ((point.getMinute() - fromMinute) / 60)] = point.getValue();
     }
+    for (int i = 0; i < ranges.size(); i++) {
+      HourlyTemperature fetched = (HourlyTemperature) results.get(i);
+      long[] range = ranges.get(i);
+      // Only hours with a value are stored, missing hours are fetched again next time
+      List<SeriesStore.Point> points = new ArrayList<>();
+      for (long minute = range[0]; minute < range[1]; minute += 60) {
+        double value = fetched.at(minute);
+        values[(int) ((minute - fromMinute) / 60)] = value;
+        if (!Double.isNaN(value)) {
+          points.add(new SeriesStore.Point(minute, 60, value));
+        }
+      }
+      if (!(live && i == ranges.size() - 1)) {
+        seriesStore.append(areaDomain, "temperature_hourly", range[0], range[1], points);
+      }
+    }
+    return temperature;
+  }
 
-    return combineApiData(combinedPriceData, combinedUsageData);
+  /**
+   * Fetch hourly temperatures of a location for the UTC days of a period.
+   *
+   * @param coordinates Location to fetch
+   * @param periodStart The start date of the period (format: yyyyMMddHHmm)
+   * @param periodEnd The end date of the period (format: yyyyMMddHHmm)
+   * @return Temperatures of every hour from the start of the first day
+   * @throws Exception if an error occurs while fetching the data
+   */
+  private HourlyTemperature fetchHourlyTemperature(
+      Pair<Double, Double> coordinates,
+      String periodStart,
+      String periodEnd) throws Exception {
+    // Concurrent calls for the same location and days wait for the one already in flight
+    String key = String.join("|", String.valueOf(coordinates.getKey()),
+        String.valueOf(coordinates.getValue()),
+        periodStart.substring(0, 8), periodEnd.substring(0, 8));
+    return hourlyFlights.run(key, () -> temperatureClient.fetchHourly(
+        new TemperatureClient.Location(coordinates.getKey(), coordinates.getValue(), "GMT"),
+        LocalDate.parse(periodStart.substring(0, 8), dayFormatter),
+        LocalDate.parse(periodEnd.substring(0, 8), dayFormatter)));
   }
 
   /**
@@ -263,136 +1028,70 @@ public class ApiService {
       String periodStart,
       String periodEnd,
       String timezone) throws Exception {
-
-    // Formatters for date conversion
-    DateTimeFormatter inputFormatter = DateTimeFormatter.ofPattern("yyyyMMddHHmm");
-    DateTimeFormatter outputFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
-    // Format input dates
-    periodStart = LocalDateTime.parse(periodStart, inputFormatter).format(outputFormatter);
-    periodEnd = LocalDateTime.parse(periodEnd, inputFormatter).format(outputFormatter);
-    String today = LocalDateTime.now().format(outputFormatter);
-
-    // Adjust periodStart and periodEnd if it's today
-    boolean isStartToday = periodStart.equals(today);
-    boolean isEndToday = periodEnd.equals(today);
-
-    if (isEndToday) {
-      periodEnd = LocalDateTime.now().minusDays(1).format(outputFormatter);
-    }
-
-    if (isStartToday) {
-      periodStart = LocalDateTime.now().minusDays(1).format(outputFormatter);
-    }
-
-    // Fetch historical data
-    Map<String, Double> temperatureMap = fetchHistoricalData(
-        latitude, longitude, periodStart, periodEnd, timezone
-    );
-
-    // Fetch forecast data if necessary
-    if (isStartToday || isEndToday) {
-      Map<String, Double> forecastData = fetchForecastData(latitude, longitude, timezone);
-      temperatureMap.putAll(forecastData);
-    }
-
-    return temperatureMap;
+    // Concurrent calls for the same location and period wait for the one already in flight
+    String key = String.join("|", String.valueOf(latitude), String.valueOf(longitude),
+        periodStart.substring(0, 8), periodEnd.substring(0, 8), timezone);
+    return new HashMap<>(temperatureFlights.run(key, () ->
+        fetchTemperatureDataUncoalesced(latitude, longitude, periodStart, periodEnd, timezone)));
   }
 
-  private Map<String, Double> fetchHistoricalData(
+  private Map<String, Double> fetchTemperatureDataUncoalesced(
       double latitude,
       double longitude,
       String periodStart,
       String periodEnd,
-      String timezone
-  ) throws Exception {
-    String urlTemplate = "https://archive-api.open-meteo.com/v1/archive?latitude=%s&longitude=%s"
-          + "&start_date=%s&end_date=%s&timezone=%s"
-          + "&daily=temperature_2m_min&daily=temperature_2m_max";
-    String url = String.format(urlTemplate, latitude, longitude, periodStart, periodEnd, timezone);
-
-    JsonObject response = sendGetRequest(url);
-    JsonObject dailyData = response.getAsJsonObject("daily");
-
-    return extractTemperatureData(dailyData);
-  }
-
-  private Map<String, Double> fetchForecastData(
-        double latitude,
-        double longitude,
-        String timezone
-  ) throws Exception {
-    String urlTemplate = "https://api.open-meteo.com/v1/forecast?latitude=%s&longitude=%s"
-            + "&daily=temperature_2m_min&daily=temperature_2m_max&timezone=%s&forecast_days=1";
-    String url = String.format(urlTemplate, latitude, longitude, timezone);
-
-    JsonObject response = sendGetRequest(url);
-    JsonObject dailyData = response.getAsJsonObject("daily");
-
-    return extractTemperatureData(dailyData);
+      String timezone) throws Exception {
+    return temperatureClient.fetch(
+        new TemperatureClient.Location(latitude, longitude, timezone),
+        LocalDate.parse(periodStart.substring(0, 8), dayFormatter),
+        LocalDate.parse(periodEnd.substring(0, 8), dayFormatter));
   }
 
-  private JsonObject sendGetRequest(String urlString) throws Exception {
-    URI uri = new URI(urlString);
-    URL url = uri.toURL();
-    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-    connection.setRequestMethod("GET");
-
-    int responseCode = connection.getResponseCode();
-    if (responseCode != 200) {
-      throw new IOException("Failed to fetch data from URL: " + urlString
-          + "| HTTP status:" + responseCode);
-    }
-
-    InputStreamReader reader = new InputStreamReader(connection.getInputStream());
-    JsonElement responseJson = JsonParser.parseReader(reader);
-    reader.close();
-
-    if (!responseJson.isJsonObject()) {
-      throw new IOException("Unexpected JSON format: " + responseJson);
-    }
-
-    return responseJson.getAsJsonObject();
-  }
   /**
-   * Extract temperature data from the JSON object.
+   * Fetch daily temperatures of several countries at once.
+   * Days missing from the cache are fetched for all countries in a single request.
    *
-   * @param dailyData The JSON object containing the daily data
-   * @return A map of dates to mean temperatures
+   * @param countries The country names
+   * @param periodStart The start date of the period (format: yyyyMMddHHmm)
+   * @param periodEnd The end date of the period (format: yyyyMMddHHmm)
+   * @return Temperatures of each country as a map of dates to mean temperatures
+   * @throws Exception if an error occurs while fetching the data
    */
-
-  private Map<String, Double> extractTemperatureData(JsonObject dailyData) {
-    Map<String, Double> temperatureMap = new LinkedHashMap<>();
-
-    JsonArray dates = dailyData.getAsJsonArray("time");
-    JsonArray minTemps = dailyData.getAsJsonArray("temperature_2m_min");
-    JsonArray maxTemps = dailyData.getAsJsonArray("temperature_2m_max");
-
-    for (int i = 0; i < dates.size(); i++) {
-      String date = dates.get(i).getAsString();
-      double minTemp = minTemps.get(i).getAsDouble();
-      double maxTemp = maxTemps.get(i).getAsDouble();
-      double meanTemp = (minTemp + maxTemp) / 2;
-
-      temperatureMap.put(date, meanTemp);
+  public Map<String, Map<String, Double>> fetchTemperatures(
+      List<String> countries,
+      String periodStart,
+      String periodEnd) throws Exception {
+    validatePeriod(periodStart, periodEnd);
+    Map<String, TemperatureClient.Location> locations = new LinkedHashMap<>();
+    for (String country : countries) {
+      Pair<Double, Double> coordinates = COUNTRY_COORDINATES.get(country);
+      if (coordinates == null) {
+        throw new IllegalArgumentException("Unknown country: " + country);
+      }
+      locations.put(country, new TemperatureClient.Location(
+          coordinates.getKey(), coordinates.getValue(), COUNTRY_TIMEZONES.get(country)));
     }
 
-    return temperatureMap;
+    Map<TemperatureClient.Location, Map<String, Double>> fetched = temperatureClient.fetchAll(
+        locations.values(),
+        LocalDate.parse(periodStart.substring(0, 8), dayFormatter),
+        LocalDate.parse(periodEnd.substring(0, 8), dayFormatter));
+    Map<String, Map<String, Double>> temperatures = new LinkedHashMap<>();
+    locations.forEach((country, location) -> temperatures.put(country, fetched.get(location)));
+    return temperatures;
   }
 
-
-
   /**
    * Parse response into a list of ApiData, integrating temperature data.
    *
    * @param responseStream The response stream from API
    * @param type The type of data to parse (price or usage)
-   * @param temperatureData Map of the temperature data keyed by date (nullable if not needed)
+   * @param temperature Hourly temperatures of the period (nullable if not needed)
    * @return List of ApiData
    * @throws Exception if an error occurs
    */
   private List<ApiData> parseResponse(InputStream responseStream, String type,
-      Map<String, Double> temperatureData) throws Exception {
+      HourlyTemperature temperature) throws Exception {
 
     String dataString = switch (type) {
       case "price" -> "price.amount";
@@ -400,6 +1099,10 @@ public class ApiService {
       default -> throw new IllegalArgumentException("Invalid type: " + type);
     };
 
+    if (parserType == ParserType.STAX) {
+      return parseResponseStax(responseStream, type, dataString, temperature);
+    }
+
     Document document = DocumentBuilderFactory.newInstance()
         .newDocumentBuilder().parse(responseStream);
     List<ApiData> dataList = new ArrayList<>();
@@ -410,49 +1113,99 @@ public class ApiService {
     // Get Period nodes
     NodeList periodList = document.getElementsByTagName("Period");
     for (int i = 0; i < periodList.getLength(); i++) {
-      // First two nodes are metadata, the rest are price points
       Element periodElement = (Element) periodList.item(i);
 
-      // Start date of the period
-      LocalDateTime startDate = LocalDateTime.parse(
-          periodElement.getElementsByTagName("start").item(0).getTextContent(),
-          formatter);
+      // Start and end of the period
+      long startMinute = EntsoeStaxParser.toMinute(
+          periodElement.getElementsByTagName("start").item(0).getTextContent());
+      long endMinute = EntsoeStaxParser.toMinute(
+          periodElement.getElementsByTagName("end").item(0).getTextContent());
 
       // Resolution of the period in minutes
       int interval = Integer.parseInt(
           periodElement.getElementsByTagName("resolution").item(0)
               .getTextContent().replaceAll("\\D", ""));
 
-      // Get price points
+      // A03 curves leave out points that repeat the previous value
+      NodeList curveType = ((Element) periodElement.getParentNode())
+          .getElementsByTagName("curveType");
+      boolean fillGaps = curveType.getLength() > 0
+          && curveType.item(0).getTextContent().trim().equals("A03");
+
+      // Points are placed by their position like in the streaming parser
+      EntsoeStaxParser.PeriodCursor cursor = new EntsoeStaxParser.PeriodCursor(
+          startMinute, interval, fillGaps, (epochMinute, pointInterval, value) -> {
+            ApiData data = new ApiData();
+            switch (type) {
+              case "price" -> data.price = value;
+              case "usage" -> data.usage = value;
+              default -> throw new IllegalArgumentException("Invalid type: " + type);
+            }
+            data.date = LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+            data.interval = pointInterval;
+
+            // Add temperature data if available
+            if (temperature != null) {
+              setTemperature(data, temperature, epochMinute);
+            }
+
+            dataList.add(data);
+          });
+
       NodeList points = periodElement.getElementsByTagName("Point");
       for (int j = 0; j < points.getLength(); j++) {
         Element pointElement = (Element) points.item(j);
-        double dataPoint = Double.parseDouble(pointElement.getElementsByTagName(dataString)
-            .item(0).getTextContent());
-
-        // Calculate the date of the price point based on the start date and interval
-        LocalDateTime date = startDate.plusMinutes((long) interval * (j - 1));
+        cursor.accept(
+            Integer.parseInt(pointElement.getElementsByTagName("position")
+                .item(0).getTextContent().trim()),
+            Double.parseDouble(pointElement.getElementsByTagName(dataString)
+                .item(0).getTextContent()));
+      }
+      cursor.finish(endMinute);
+    }
+    return dataList;
 
-        ApiData data = new ApiData();
-        switch (type) {
-          case "price" -> data.price = dataPoint;
-          case "usage" -> data.usage = dataPoint;
-          default -> throw new IllegalArgumentException("Invalid type: " + type);
-        }
-        data.date = date;
-        data.interval = interval;
+  }
 
-        String dateKey = date.toLocalDate().toString();
+  /**
+   * Parse response with the streaming parser, creating ApiData as points are read.
+   *
+   * @param responseStream The response stream from API
+   * @param type The type of data to parse (price or usage)
+   * @param dataString Name of the element holding the value
+   * @param temperature Hourly temperatures of the period (nullable if not needed)
+   * @return List of ApiData
+   * @throws Exception if an error occurs
+   */
+  private List<ApiData> parseResponseStax(InputStream responseStream, String type,
+      String dataString, HourlyTemperature temperature) throws Exception {
+    List<ApiData> dataList = new ArrayList<>();
 
-        // Add temperature data if available
-        if (temperatureData != null && temperatureData.containsKey(dateKey)) {
-          data.temperatureMean = temperatureData.get(dateKey);
-        }
+    EntsoeStaxParser.parse(responseStream, dataString, (epochMinute, interval, value) -> {
+      ApiData data = new ApiData();
+      if (type.equals("price")) {
+        data.price = value;
+      } else {
+        data.usage = value;
+      }
+      data.date = LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+      data.interval = interval;
 
-        dataList.add(data);
+      // Add temperature data if available
+      if (temperature != null) {
+        setTemperature(data, temperature, epochMinute);
       }
-    }
+
+      dataList.add(data);
+    });
     return dataList;
+  }
 
+  // Joined by the hour index of the point, missing hours leave the temperature null
+  private static void setTemperature(ApiData data, HourlyTemperature temperature, long minute) {
+    double value = temperature.at(minute);
+    if (!Double.isNaN(value)) {
+      data.temperatureMean = value;
+    }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,177 @@
+package fi.tuni.ec.api;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Reduces data to about as many points as a chart has pixels.
+ * Points are picked per metric, price and usage, and the union of the picked points is kept so
+ * both charts get the same rows. The result never holds more points than the target.
+ */
+public class Downsampler {
+
+  /**
+   * How points are picked.
+   */
+  public enum Mode {
+    /** Largest-Triangle-Three-Buckets, keeps the visual shape of the series. */
+    LTTB("Visual (LTTB)"),
+    /** Minimum and maximum of each bucket, keeps every peak. */
+    MIN_MAX("Min / max"),
+    /** No downsampling. */
+    RAW("Raw");
+
+    private final String label;
+
+    Mode(String label) {
+      this.label = label;
+    }
+
+    @Override
+    public String toString() {
+      return label;
+    }
+  }
+
+  private Downsampler() {
+  }
+
+  /**
+   * Downsample data to at most the target number of points.
+   *
+   * @param dataList Data sorted by time
+   * @param target Maximum number of points, e.g. the chart's width in pixels
+   * @param mode How points are picked
+   * @return The picked points in time order, the list itself if nothing needs to be dropped
+   */
+  public static List<ApiData> downsample(List<ApiData> dataList, int target, Mode mode) {
+    int size = dataList.size();
+    if (mode == Mode.RAW || size <= target || target < 6) {
+      return dataList;
+    }
+
+    double[] x = new double[size];
+    double[] price = new double[size];
+    double[] usage = new double[size];
+    for (int i = 0; i < size; i++) {
+      ApiData data = dataList.get(i);
+      x[i] = TimeSeries.toEpochMinute(data.date);
+      price[i] = data.price;
+      usage[i] = data.usage;
+    }
+
+    // Each metric gets its share of the target so the union stays within it
+    BitSet keep = new BitSet(size);
+    if (mode == Mode.LTTB) {
+      lttb(x, price, target / 2, keep);
+      lttb(x, usage, target / 2, keep);
+    } else {
+      int buckets = (target - 2) / 4;
+      minMax(price, buckets, keep);
+      minMax(usage, buckets, keep);
+    }
+
+    List<ApiData> result = new ArrayList<>(keep.cardinality());
+    for (int i = keep.nextSetBit(0); i >= 0; i = keep.nextSetBit(i + 1)) {
+      result.add(dataList.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * Pick points with Largest-Triangle-Three-Buckets.
+   * The first and last points are always kept. The rest is split into buckets and from each
+   * bucket the point forming the largest triangle with the previously picked point and the
+   * average of the next bucket is kept. Missing values (NaN) are never preferred.
+   *
+   * @param x Times of the points
+   * @param y Values of the points
+   * @param threshold Number of points to pick
+   * @param keep Set the picked indices are added to
+   */
+  static void lttb(double[] x, double[] y, int threshold, BitSet keep) {
+    int size = x.length;
+    if (threshold >= size || threshold < 3) {
+      keep.set(0, size);
+      return;
+    }
+
+    double every = (double) (size - 2) / (threshold - 2);
+    int previous = 0;
+    keep.set(0);
+    for (int bucket = 0; bucket < threshold - 2; bucket++) {
+      // Average of the next bucket, the last point for the last bucket
+      int nextFrom = (int) ((bucket + 1) * every) + 1;
+      int nextTo = Math.min((int) ((bucket + 2) * every) + 1, size);
+      double avgX = 0;
+      double avgY = 0;
+      int count = 0;
+      for (int i = nextFrom; i < nextTo; i++) {
+        if (!Double.isNaN(y[i])) {
+          avgX += x[i];
+          avgY += y[i];
+          count++;
+        }
+      }
+      if (count > 0) {
+        avgX /= count;
+        avgY /= count;
+      } else {
+        avgX = x[size - 1];
+        avgY = y[size - 1];
+      }
+
+      int from = (int) (bucket * every) + 1;
+      int to = (int) ((bucket + 1) * every) + 1;
+      int picked = from;
+      double maxArea = -1;
+      for (int i = from; i < to; i++) {
+        double area = Math.abs((x[previous] - avgX) * (y[i] - y[previous])
+            - (x[previous] - x[i]) * (avgY - y[previous]));
+        // NaN areas compare false and are only picked if the whole bucket is missing
+        if (area > maxArea) {
+          maxArea = area;
+          picked = i;
+        }
+      }
+      keep.set(picked);
+      previous = picked;
+    }
+    keep.set(size - 1);
+  }
+
+  /**
+   * Pick the minimum and maximum of each bucket, plus the first and last points.
+   *
+   * @param y Values of the points
+   * @param buckets Number of buckets
+   * @param keep Set the picked indices are added to
+   */
+  static void minMax(double[] y, int buckets, BitSet keep) {
+    int size = y.length;
+    keep.set(0);
+    keep.set(size - 1);
+    for (int bucket = 0; bucket < buckets; bucket++) {
+      int from = (int) ((long) bucket * size / buckets);
+      int to = (int) ((long) (bucket + 1) * size / buckets);
+      int min = -1;
+      int max = -1;
+      for (int i = from; i < to; i++) {
+        if (Double.isNaN(y[i])) {
+          continue;
+        }
+        if (min < 0 || y[i] < y[min]) {
+          min = i;
+        }
+        if (max < 0 || y[i] > y[max]) {
+          max = i;
+        }
+      }
+      if (min >= 0) {
+        keep.set(min);
+        keep.set(max);
+      }
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package fi.tuni.ec.api;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming pull parser for ENTSO-E publication documents.
+ * Points are handed to a callback as soon as they are read, so memory use stays constant
+ * per Period instead of growing with the size of the document.
+ */
+public class EntsoeStaxParser {
+
+  private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(
+      "yyyy-MM-dd'T'HH:mm'Z'");
+
+  // XMLInputFactory is not guaranteed to be thread safe, keep one per thread
+  private static final ThreadLocal<XMLInputFactory> factory = ThreadLocal.withInitial(() -> {
+    XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+    xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+    return xmlInputFactory;
+  });
+
+  /**
+   * Receives the points of a document.
+   */
+  @FunctionalInterface
+  public interface PointHandler {
+    /**
+     * Handle a single point.
+     *
+     * @param epochMinute Time of the point in minutes since epoch (UTC)
+     * @param interval Resolution of the point's Period in minutes
+     * @param value Value of the point
+     */
+    void accept(long epochMinute, int interval, double value);
+  }
+
+  private EntsoeStaxParser() {
+  }
+
+  /**
+   * Parse a document and pass every point to the handler in document order.
+   * A point's time is the start of its Period plus (position - 1) resolutions. Curves of type
+   * A03 leave out positions whose value repeats the previous one, those are filled in.
+   *
+   * @param stream The response stream from API
+   * @param valueTag Name of the element holding the value (e.g. price.amount or quantity)
+   * @param handler Handler for the points
+   * @throws XMLStreamException if the document is malformed
+   */
+  public static void parse(InputStream stream, String valueTag, PointHandler handler)
+      throws XMLStreamException {
+    XMLStreamReader reader = factory.get().createXMLStreamReader(stream);
+    try {
+      boolean inPeriod = false;
+      String curveType = "";
+      long startMinute = 0;
+      long endMinute = 0;
+      int interval = 0;
+      int position = 0;
+      PeriodCursor cursor = null;
+
+      while (reader.hasNext()) {
+        if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+          if (reader.getEventType() == XMLStreamConstants.END_ELEMENT
+              && reader.getLocalName().equals("Period")) {
+            if (cursor != null) {
+              cursor.finish(endMinute);
+            }
+            inPeriod = false;
+          }
+          continue;
+        }
+
+        String name = reader.getLocalName();
+        if (name.equals("curveType")) {
+          curveType = reader.getElementText().trim();
+        } else if (name.equals("Period")) {
+          inPeriod = true;
+          cursor = null;
+          endMinute = 0;
+        } else if (!inPeriod) {
+          continue;
+        } else if (name.equals("start")) {
+          startMinute = toMinute(reader.getElementText());
+        } else if (name.equals("end")) {
+          endMinute = toMinute(reader.getElementText());
+        } else if (name.equals("resolution")) {
+          interval = Integer.parseInt(reader.getElementText().replaceAll("\\D", ""));
+        } else if (name.equals("position")) {
+          position = Integer.parseInt(reader.getElementText().trim());
+        } else if (name.equals(valueTag)) {
+          if (cursor == null) {
+            cursor = new PeriodCursor(startMinute, interval, curveType.equals("A03"), handler);
+          }
+          cursor.accept(position, Double.parseDouble(reader.getElementText().trim()));
+          position = 0;
+        }
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Convert a time of a document to minutes since epoch.
+   *
+   * @param time Time in UTC (format: yyyy-MM-dd'T'HH:mm'Z')
+   * @return Minutes since epoch
+   */
+  static long toMinute(String time) {
+    return LocalDateTime.parse(time.trim(), formatter).toEpochSecond(ZoneOffset.UTC) / 60;
+  }
+
+  /**
+   * Places the points of a Period by their position and fills the positions an A03 curve
+   * leaves out. Shared with the DOM parser so both produce the same times.
+   */
+  static final class PeriodCursor {
+    private final long startMinute;
+    private final int interval;
+    private final boolean fillGaps;
+    private final PointHandler handler;
+    private int lastPosition = 0;
+    private double lastValue = Double.NaN;
+
+    /**
+     * Create a cursor for a Period.
+     *
+     * @param startMinute Start of the Period in minutes since epoch (UTC)
+     * @param interval Resolution of the Period in minutes
+     * @param fillGaps true for A03 curves, where a left out position repeats the previous value
+     * @param handler Handler for the points
+     */
+    PeriodCursor(long startMinute, int interval, boolean fillGaps, PointHandler handler) {
+      this.startMinute = startMinute;
+      this.interval = interval;
+      this.fillGaps = fillGaps;
+      this.handler = handler;
+    }
+
+    /**
+     * Pass a point to the handler.
+     *
+     * @param position Position of the point, starting from 1, 0 if the document has none
+     * @param value Value of the point
+     */
+    void accept(int position, double value) {
+      int at = position > 0 ? position : lastPosition + 1;
+      if (fillGaps && lastPosition > 0) {
+        for (int skipped = lastPosition + 1; skipped < at; skipped++) {
+          emit(skipped, lastValue);
+        }
+      }
+      emit(at, value);
+      lastPosition = at;
+      lastValue = value;
+    }
+
+    /**
+     * Fill an A03 curve up to the end of its Period.
+     *
+     * @param endMinute End of the Period in minutes since epoch (UTC), 0 if unknown
+     */
+    void finish(long endMinute) {
+      if (!fillGaps || lastPosition == 0 || interval <= 0) {
+        return;
+      }
+      for (int skipped = lastPosition + 1;
+          startMinute + (long) interval * (skipped - 1) < endMinute; skipped++) {
+        emit(skipped, lastValue);
+        lastPosition = skipped;
+      }
+    }
+
+    private void emit(int position, double value) {
+      handler.accept(startMinute + (long) interval * (position - 1), interval, value);
+    }
+  }
+}
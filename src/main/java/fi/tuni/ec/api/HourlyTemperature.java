@@ -0,0 +1,89 @@
+package fi.tuni.ec.api;
+
+import java.util.Arrays;
+
+/**
+ * Hourly temperatures of a range, one value per hour from the start of the range.
+ * A point is joined to its hour by the index (minute - startMinute) / 60, so filling a series
+ * needs neither dates nor map lookups. Missing hours are NaN.
+ */
+public class HourlyTemperature {
+
+  private final long startMinute;
+  private final double[] values;
+
+  /**
+   * Create a range where every hour is missing.
+   *
+   * @param startMinute Start of the first hour in minutes since epoch (UTC)
+   * @param hours Number of hours
+   */
+  public HourlyTemperature(long startMinute, int hours) {
+    this.startMinute = startMinute;
+    this.values = new double[hours];
+    Arrays.fill(values, Double.NaN);
+  }
+
+  public long getStartMinute() {
+    return startMinute;
+  }
+
+  public int size() {
+    return values.length;
+  }
+
+  // Returned as is so the client can fill it without copying
+  public double[] getValues() {
+    return values;
+  }
+
+  /**
+   * Temperature of the hour containing a time.
+   *
+   * @param epochMinute Time in minutes since epoch (UTC)
+   * @return The temperature, NaN if missing or outside the range
+   */
+  public double at(long epochMinute) {
+    long hour = Math.floorDiv(epochMinute - startMinute, 60);
+    return hour >= 0 && hour < values.length ? values[(int) hour] : Double.NaN;
+  }
+
+  /**
+   * Fill the temperature of a series. A step of an hour or less gets the temperature of its
+   * hour, a longer step the mean of the hours it covers.
+   *
+   * @param series Series to update
+   */
+  public void fill(TimeSeries series) {
+    double[] temperature = series.getTemperature();
+    int step = series.getStepMinutes();
+    long offset = series.getStartMinute() - startMinute;
+    for (int i = 0; i < temperature.length; i++, offset += step) {
+      long first = Math.floorDiv(offset, 60);
+      long last = Math.floorDiv(offset + step - 1, 60);
+      double sum = 0;
+      int count = 0;
+      for (long hour = Math.max(first, 0); hour <= last && hour < values.length; hour++) {
+        double value = values[(int) hour];
+        if (!Double.isNaN(value)) {
+          sum += value;
+          count++;
+        }
+      }
+      if (count > 0) {
+        temperature[i] = sum / count;
+      }
+    }
+  }
+
+  /**
+   * Add every hour to the buckets of an aggregation.
+   *
+   * @param aggregates Aggregates to update
+   */
+  public void addTo(Aggregator.Aggregates aggregates) {
+    for (int hour = 0; hour < values.length; hour++) {
+      aggregates.addTemperature(startMinute + hour * 60L, values[hour]);
+    }
+  }
+}
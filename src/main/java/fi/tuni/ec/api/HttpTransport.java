@@ -0,0 +1,194 @@
+package fi.tuni.ec.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Shared HTTP transport for ENTSO-E and Open-Meteo requests.
+ * Connections are pooled and kept alive between calls, HTTP/2 is used when the server supports
+ * it and responses are requested gzip compressed. OkHttp adds the Accept-Encoding header and
+ * decompresses the body while it is read, so callers always get a plain stream.
+ */
+public class HttpTransport {
+
+  private static HttpTransport shared;
+
+  private final OkHttpClient client;
+
+  /**
+   * Get the transport shared by all services.
+   *
+   * @return The shared transport
+   */
+  public static synchronized HttpTransport getShared() {
+    if (shared == null) {
+      shared = new Builder().build();
+    }
+    return shared;
+  }
+
+  // Package-private so tests can override get and answer requests without a network
+  HttpTransport(Builder builder) {
+    this.client = new OkHttpClient.Builder()
+        .connectionPool(new ConnectionPool(
+            builder.maxIdleConnections, builder.keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+        .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+        .connectTimeout(builder.connectTimeout)
+        .readTimeout(builder.readTimeout)
+        .callTimeout(builder.callTimeout)
+        .retryOnConnectionFailure(true)
+        .build();
+  }
+
+  /**
+   * Send a GET request and return the response body as a stream.
+   * Closing the stream releases the connection back to the pool.
+   *
+   * @param url The URL to request
+   * @return InputStream of the decompressed response body
+   * @throws StatusException if the response is not HTTP 200
+   * @throws IOException if the request fails
+   */
+  public InputStream get(String url) throws IOException {
+    Request request = new Request.Builder()
+        .url(url)
+        .get()
+        .build();
+
+    Response response = client.newCall(request).execute();
+    ResponseBody body = response.body();
+    if (response.code() != 200 || body == null) {
+      int code = response.code();
+      Duration retryAfter = parseRetryAfter(response.header("Retry-After"), Clock.systemUTC());
+      response.close();
+      throw new StatusException(code, retryAfter);
+    }
+    return body.byteStream();
+  }
+
+  /**
+   * Parse a Retry-After header, given either as seconds or as an HTTP date.
+   *
+   * @param value Value of the header, may be null
+   * @param clock Clock used for converting a date to a delay
+   * @return Time to wait, null if the header is missing or invalid
+   */
+  static Duration parseRetryAfter(String value, Clock clock) {
+    if (value == null || value.isBlank()) {
+      return null;
+    }
+    String trimmed = value.trim();
+    try {
+      return Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed)));
+    } catch (NumberFormatException e) {
+      // Not seconds, try a date
+    }
+    try {
+      ZonedDateTime date = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+      Duration delay = Duration.between(clock.instant(), date.toInstant());
+      return delay.isNegative() ? Duration.ZERO : delay;
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Release pooled connections and worker threads.
+   */
+  public void shutdown() {
+    client.connectionPool().evictAll();
+    client.dispatcher().executorService().shutdown();
+  }
+
+  /**
+   * Thrown when the server answers with a status other than HTTP 200.
+   */
+  public static class StatusException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int code;
+    private final Duration retryAfter;
+
+    /**
+     * Create an exception for a response status.
+     *
+     * @param code HTTP status code
+     * @param retryAfter Wait time asked by the server, null if not given
+     */
+    public StatusException(int code, Duration retryAfter) {
+      super("HTTP " + code);
+      this.code = code;
+      this.retryAfter = retryAfter;
+    }
+
+    public int getCode() {
+      return code;
+    }
+
+    public Duration getRetryAfter() {
+      return retryAfter;
+    }
+  }
+
+  /**
+   * Builder for configuring a transport.
+   */
+  public static class Builder {
+    private int maxIdleConnections = 8;
+    private Duration keepAlive = Duration.ofMinutes(5);
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    private Duration readTimeout = Duration.ofSeconds(30);
+    private Duration callTimeout = Duration.ofSeconds(60);
+
+    /**
+     * Set the connection pool size.
+     *
+     * @param maxIdleConnections Maximum number of idle connections kept open
+     * @param keepAlive Time an idle connection is kept open
+     * @return This builder
+     */
+    public Builder connectionPool(int maxIdleConnections, Duration keepAlive) {
+      this.maxIdleConnections = maxIdleConnections;
+      this.keepAlive = keepAlive;
+      return this;
+    }
+
+    public Builder connectTimeout(Duration connectTimeout) {
+      this.connectTimeout = connectTimeout;
+      return this;
+    }
+
+    public Builder readTimeout(Duration readTimeout) {
+      this.readTimeout = readTimeout;
+      return this;
+    }
+
+    /**
+     * Set the total time allowed for a call, including connecting, sending and reading.
+     *
+     * @param callTimeout Total timeout of a call
+     * @return This builder
+     */
+    public Builder callTimeout(Duration callTimeout) {
+      this.callTimeout = callTimeout;
+      return this;
+    }
+
+    public HttpTransport build() {
+      return new HttpTransport(this);
+    }
+  }
+}
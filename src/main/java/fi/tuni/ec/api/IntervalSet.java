@@ -0,0 +1,87 @@
+package fi.tuni.ec.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Set of half-open time intervals [from, to) in minutes since epoch.
+ * Overlapping and adjacent intervals are merged, so the set always holds disjoint intervals
+ * in order. Used to record which ranges are held locally and to find the ranges that are not.
+ */
+public class IntervalSet {
+
+  // Start -> end of each interval
+  private final TreeMap<Long, Long> intervals = new TreeMap<>();
+
+  /**
+   * Add an interval, merging it with the intervals it overlaps or touches.
+   *
+   * @param from Start, inclusive
+   * @param to End, exclusive
+   */
+  public void add(long from, long to) {
+    if (to <= from) {
+      return;
+    }
+    Map.Entry<Long, Long> before = intervals.floorEntry(from);
+    if (before != null && before.getValue() >= from) {
+      from = before.getKey();
+      to = Math.max(to, before.getValue());
+    }
+    Map.Entry<Long, Long> next = intervals.ceilingEntry(from);
+    while (next != null && next.getKey() <= to) {
+      to = Math.max(to, next.getValue());
+      intervals.remove(next.getKey());
+      next = intervals.ceilingEntry(from);
+    }
+    intervals.put(from, to);
+  }
+
+  /**
+   * Check whether a range is fully inside the set.
+   *
+   * @param from Start, inclusive
+   * @param to End, exclusive
+   * @return true if no part of the range is missing
+   */
+  public boolean covers(long from, long to) {
+    if (to <= from) {
+      return true;
+    }
+    Map.Entry<Long, Long> entry = intervals.floorEntry(from);
+    return entry != null && entry.getValue() >= to;
+  }
+
+  /**
+   * Get the parts of a range that are not in the set.
+   *
+   * @param from Start, inclusive
+   * @param to End, exclusive
+   * @return Missing intervals in order as {from, to} pairs
+   */
+  public List<long[]> missing(long from, long to) {
+    List<long[]> gaps = new ArrayList<>();
+    long position = from;
+    Map.Entry<Long, Long> entry = intervals.floorEntry(from);
+    if (entry == null || entry.getValue() <= from) {
+      entry = intervals.higherEntry(from);
+    }
+    while (position < to && entry != null && entry.getKey() < to) {
+      if (entry.getKey() > position) {
+        gaps.add(new long[] {position, entry.getKey()});
+      }
+      position = Math.max(position, entry.getValue());
+      entry = intervals.higherEntry(entry.getKey());
+    }
+    if (position < to) {
+      gaps.add(new long[] {position, to});
+    }
+    return gaps;
+  }
+
+  public boolean isEmpty() {
+    return intervals.isEmpty();
+  }
+}
@@ -0,0 +1,32 @@
+package fi.tuni.ec.api;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Data of a country split into several bidding zones.
+ * Holds the merged country series and the series of each zone for drill-down.
+ */
+public class MultiZoneData {
+  private final TimeSeries country;
+  private final Map<String, TimeSeries> zones;
+
+  /**
+   * Constructor for MultiZoneData.
+   *
+   * @param country Merged series of the whole country
+   * @param zones Series of each zone keyed by zone name (e.g. SWE_1)
+   */
+  public MultiZoneData(TimeSeries country, Map<String, TimeSeries> zones) {
+    this.country = country;
+    this.zones = Collections.unmodifiableMap(zones);
+  }
+
+  public TimeSeries getCountry() {
+    return country;
+  }
+
+  public Map<String, TimeSeries> getZones() {
+    return zones;
+  }
+}
@@ -0,0 +1,201 @@
+package fi.tuni.ec.api;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads periods the user is likely to open next in the background, one at a time.
+ * Each call to prefetch replaces the planned periods: periods no longer planned are cancelled,
+ * periods already being loaded keep going. Prefetched responses that have not been opened yet
+ * may take at most a quarter of the response cache, so prefetching cannot fill it with data the
+ * user never looks at. Once they are opened or evicted prefetching resumes.
+ */
+public class Prefetcher {
+
+  /**
+   * Loads a period into the local caches.
+   */
+  @FunctionalInterface
+  public interface Loader {
+    void load(Period period) throws Exception;
+  }
+
+  private final Loader loader;
+  private final ResponseCache responseCache;
+  private final int maxPeriods;
+  private final ExecutorService executor =
+      Executors.newSingleThreadExecutor(Thread.ofVirtual().name("prefetch").factory());
+  // Planned and running loads in order
+  private final Map<Period, Future<?>> planned = new LinkedHashMap<>();
+
+  /**
+   * Create a prefetcher.
+   *
+   * @param loader Loader run for each period, should use a background priority
+   * @param responseCache Cache whose prefetched size limits prefetching, null for no limit
+   * @param maxPeriods Maximum number of periods planned at once
+   */
+  public Prefetcher(Loader loader, ResponseCache responseCache, int maxPeriods) {
+    this.loader = loader;
+    this.responseCache = responseCache;
+    this.maxPeriods = maxPeriods;
+  }
+
+  /**
+   * Plan the given periods, most likely first, and cancel the ones planned before that are
+   * not among them.
+   *
+   * @param periods Periods to load
+   */
+  public synchronized void prefetch(List<Period> periods) {
+    List<Period> wanted = new ArrayList<>();
+    for (Period period : periods) {
+      if (wanted.size() < maxPeriods && !wanted.contains(period)) {
+        wanted.add(period);
+      }
+    }
+
+    for (Iterator<Map.Entry<Period, Future<?>>> it = planned.entrySet().iterator();
+        it.hasNext(); ) {
+      Map.Entry<Period, Future<?>> entry = it.next();
+      // Finished periods stay planned while wanted so they are not loaded again
+      if (!wanted.contains(entry.getKey())) {
+        entry.getValue().cancel(true);
+        it.remove();
+      }
+    }
+    for (Period period : wanted) {
+      if (!planned.containsKey(period)) {
+        planned.put(period, executor.submit(() -> run(period)));
+      }
+    }
+  }
+
+  /**
+   * Cancel all planned loads except the given period, e.g. when the user jumps somewhere else.
+   * The kept period is usually the one just opened, its load keeps going so the view can join
+   * it instead of starting over.
+   *
+   * @param keep Period to keep loading, null to cancel everything
+   */
+  public synchronized void cancelExcept(Period keep) {
+    for (Iterator<Map.Entry<Period, Future<?>>> it = planned.entrySet().iterator();
+        it.hasNext(); ) {
+      Map.Entry<Period, Future<?>> entry = it.next();
+      if (!entry.getKey().equals(keep)) {
+        entry.getValue().cancel(true);
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Cancel all planned loads.
+   */
+  public synchronized void cancel() {
+    planned.values().forEach(future -> future.cancel(true));
+    planned.clear();
+  }
+
+  /**
+   * Periods planned or being loaded.
+   *
+   * @return Periods in planned order
+   */
+  public synchronized List<Period> getPlanned() {
+    List<Period> pending = new ArrayList<>();
+    planned.forEach((period, future) -> {
+      if (!future.isDone()) {
+        pending.add(period);
+      }
+    });
+    return pending;
+  }
+
+  /**
+   * Stop the background thread.
+   */
+  public void shutdown() {
+    cancel();
+    executor.shutdownNow();
+  }
+
+  private void run(Period period) {
+    if (Thread.currentThread().isInterrupted()) {
+      return;
+    }
+    // The rest of the cache is left for data the user actually opens
+    if (responseCache != null
+        && responseCache.getPrefetchedBytes() > responseCache.getMaxBytes() / 4) {
+      System.out.println("Prefetch skipped, prefetch budget used: " + period);
+      return;
+    }
+    try {
+      loader.load(period);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      System.out.println("Prefetch of " + period + " failed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * A period of a country, from the first to the last day inclusive.
+   */
+  public static class Period {
+    private final String country;
+    private final LocalDate from;
+    private final LocalDate to;
+
+    /**
+     * Create a period.
+     *
+     * @param country The country
+     * @param from First day
+     * @param to Last day
+     */
+    public Period(String country, LocalDate from, LocalDate to) {
+      this.country = country;
+      this.from = from;
+      this.to = to;
+    }
+
+    public String getCountry() {
+      return country;
+    }
+
+    public LocalDate getFrom() {
+      return from;
+    }
+
+    public LocalDate getTo() {
+      return to;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Period other)) {
+        return false;
+      }
+      return country.equals(other.country) && from.equals(other.from) && to.equals(other.to);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(country, from, to);
+    }
+
+    @Override
+    public String toString() {
+      return country + " " + from + " - " + to;
+    }
+  }
+}
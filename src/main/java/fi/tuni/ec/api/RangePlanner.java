@@ -0,0 +1,98 @@
+package fi.tuni.ec.api;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits long periods into chunks that fit the ENTSO-E per-request limits.
+ * Chunk length depends on the document type: the API accepts at most one year per request,
+ * and each request is kept under a point budget based on the finest resolution the document
+ * type is published in, so that responses stay small enough to be parsed in parallel.
+ */
+public class RangePlanner {
+
+  private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+  // ENTSO-E rejects queries spanning more than a year
+  private static final int MAX_DAYS_PER_REQUEST = 365;
+  // Points per request to aim for
+  private static final int POINT_BUDGET = 20_000;
+  // Finest resolution in minutes each document type is published in
+  private static final Map<String, Integer> FINEST_RESOLUTION = Map.of(
+      "A44", 15,
+      "A65", 15
+  );
+
+  private RangePlanner() {
+  }
+
+  /**
+   * Maximum number of days fetched in a single request for a document type.
+   *
+   * @param docType The document type (e.g. A44 or A65)
+   * @return Number of days
+   */
+  public static int maxDaysPerRequest(String docType) {
+    int resolution = FINEST_RESOLUTION.getOrDefault(docType, 60);
+    int pointsPerDay = 1440 / resolution;
+    return Math.max(1, Math.min(MAX_DAYS_PER_REQUEST, POINT_BUDGET / pointsPerDay));
+  }
+
+  /**
+   * Split a period into chunks for a document type.
+   *
+   * @param docType The document type (e.g. A44 or A65)
+   * @param periodStart Start of the period (format: yyyyMMddHHmm)
+   * @param periodEnd End of the period (format: yyyyMMddHHmm)
+   * @return List of periods in order, each as {start, end}
+   */
+  public static List<String[]> plan(String docType, String periodStart, String periodEnd) {
+    return split(periodStart, periodEnd, maxDaysPerRequest(docType));
+  }
+
+  /**
+   * Split a period into chunks of whole days.
+   * The first chunk keeps the start time and the last one the end time of the period. Periods
+   * of the API are half-open, so every other chunk ends at midnight where the next one starts
+   * and no hour between chunks is left out. Chunks are never empty.
+   *
+   * @param periodStart Start of the period (format: yyyyMMddHHmm)
+   * @param periodEnd End of the period (format: yyyyMMddHHmm)
+   * @param maxDays Maximum number of days in a chunk
+   * @return List of periods in order, each as {start, end}
+   */
+  public static List<String[]> split(String periodStart, String periodEnd, int maxDays) {
+    List<String[]> periods = new ArrayList<>();
+    LocalDate start = LocalDate.parse(periodStart.substring(0, 8), dateFormatter);
+    LocalDate end = LocalDate.parse(periodEnd.substring(0, 8), dateFormatter);
+
+    if (ChronoUnit.DAYS.between(start, end) < maxDays) {
+      periods.add(new String[] {periodStart, periodEnd});
+      return periods;
+    }
+
+    String chunkStart = periodStart;
+    while (!start.isAfter(end)) {
+      LocalDate chunkEnd = start.plusDays(maxDays - 1);
+      String chunkEndString;
+      if (chunkEnd.isBefore(end)) {
+        chunkEndString = chunkEnd.plusDays(1).format(dateFormatter) + "0000";
+      } else {
+        chunkEnd = end;
+        chunkEndString = periodEnd;
+      }
+      // A period ending at midnight leaves nothing for a chunk starting on its last day
+      if (chunkStart.compareTo(chunkEndString) < 0) {
+        periods.add(new String[] {chunkStart, chunkEndString});
+      }
+
+      start = chunkEnd.plusDays(1);
+      chunkStart = start.format(dateFormatter) + "0000";
+    }
+    return periods;
+  }
+}
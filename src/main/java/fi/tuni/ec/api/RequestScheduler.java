@@ -0,0 +1,280 @@
+package fi.tuni.ec.api;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules ENTSO-E requests so they stay within the API's request quota.
+ * Requests take a token from a token bucket refilled at a fixed rate and hold one of a limited
+ * number of slots while their response is read. Waiting interactive requests always go before
+ * waiting background requests. Responses with HTTP 429 or 503 are retried with jittered
+ * exponential backoff, waiting at least as long as the server's Retry-After asks. A 429 pauses
+ * all requests, since the quota is shared by everything using the same token.
+ */
+public class RequestScheduler {
+
+  /**
+   * Priority classes of requests, in the order they are served.
+   */
+  public enum Priority {
+    /** Requests a user is waiting for. */
+    INTERACTIVE,
+    /** Prefetching and bulk loads. */
+    BACKGROUND
+  }
+
+  /**
+   * A request to send, returning the response body.
+   */
+  @FunctionalInterface
+  public interface Request {
+    InputStream send() throws IOException;
+  }
+
+  private static RequestScheduler shared;
+
+  private final double tokensPerNano;
+  private final int burst;
+  private final int maxInFlight;
+  private final int maxAttempts;
+  private final Duration baseBackoff;
+  private final Duration maxBackoff;
+
+  // State below is guarded by this
+  private double tokens;
+  private long refilledAt = System.nanoTime();
+  private long pausedUntil = refilledAt;
+  private int inFlight = 0;
+  private final int[] waiting = new int[Priority.values().length];
+  private long retries = 0;
+
+  /**
+   * Get the scheduler shared by all services, the quota is per API token.
+   *
+   * @return The shared scheduler
+   */
+  public static synchronized RequestScheduler getShared() {
+    if (shared == null) {
+      shared = new Builder().build();
+    }
+    return shared;
+  }
+
+  private RequestScheduler(Builder builder) {
+    this.tokensPerNano = builder.requestsPerMinute / 60e9;
+    this.burst = builder.burst;
+    this.maxInFlight = builder.maxInFlight;
+    this.maxAttempts = builder.maxAttempts;
+    this.baseBackoff = builder.baseBackoff;
+    this.maxBackoff = builder.maxBackoff;
+    this.tokens = burst;
+  }
+
+  /**
+   * Send a request once a token and a slot are available, retrying throttled responses.
+   * The slot is held until the returned stream is closed.
+   *
+   * @param priority Priority class of the request
+   * @param request The request to send
+   * @return Response body
+   * @throws IOException if the request fails or is still throttled after the last attempt
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public InputStream execute(Priority priority, Request request)
+      throws IOException, InterruptedException {
+    for (int attempt = 1; ; attempt++) {
+      acquire(priority);
+      try {
+        return new SlotReleasingStream(request.send(), this);
+      } catch (HttpTransport.StatusException e) {
+        release();
+        if (!isRetryable(e.getCode()) || attempt >= maxAttempts) {
+          throw e;
+        }
+        Duration delay = backoff(attempt, e.getRetryAfter());
+        synchronized (this) {
+          retries++;
+          if (e.getCode() == 429) {
+            pausedUntil = Math.max(pausedUntil, System.nanoTime() + delay.toNanos());
+          }
+        }
+        Thread.sleep(delay.toMillis());
+      } catch (IOException | RuntimeException e) {
+        release();
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Number of retries done so far.
+   *
+   * @return Retry count
+   */
+  public synchronized long getRetries() {
+    return retries;
+  }
+
+  static boolean isRetryable(int code) {
+    return code == 429 || code == 503;
+  }
+
+  /**
+   * Delay before the next attempt: full jitter over an exponentially growing window, but never
+   * less than the server asked for.
+   *
+   * @param attempt Number of the attempt that failed, from 1
+   * @param retryAfter Wait time asked by the server, null if not given
+   * @return Time to wait
+   */
+  Duration backoff(int attempt, Duration retryAfter) {
+    long window = baseBackoff.toMillis() << Math.min(attempt - 1, 20);
+    window = Math.min(window, maxBackoff.toMillis());
+    long delay = ThreadLocalRandom.current().nextLong(window / 2, window + 1);
+    if (retryAfter != null) {
+      delay = Math.max(delay, retryAfter.toMillis());
+    }
+    return Duration.ofMillis(delay);
+  }
+
+  private synchronized void acquire(Priority priority) throws InterruptedException {
+    waiting[priority.ordinal()]++;
+    try {
+      while (true) {
+        long now = System.nanoTime();
+        if (now < pausedUntil) {
+          TimeUnit.NANOSECONDS.timedWait(this, pausedUntil - now);
+          continue;
+        }
+        if (inFlight >= maxInFlight || hasWaitingBefore(priority)) {
+          wait();
+          continue;
+        }
+        refill(now);
+        if (tokens >= 1) {
+          tokens--;
+          inFlight++;
+          return;
+        }
+        TimeUnit.NANOSECONDS.timedWait(this, (long) Math.ceil((1 - tokens) / tokensPerNano));
+      }
+    } finally {
+      waiting[priority.ordinal()]--;
+      // Lower priorities may have been held back by this request
+      notifyAll();
+    }
+  }
+
+  private synchronized void release() {
+    inFlight--;
+    notifyAll();
+  }
+
+  private boolean hasWaitingBefore(Priority priority) {
+    for (int i = 0; i < priority.ordinal(); i++) {
+      if (waiting[i] > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void refill(long now) {
+    tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+    refilledAt = now;
+  }
+
+  /**
+   * Response stream that gives its slot back when closed.
+   */
+  private static class SlotReleasingStream extends FilterInputStream {
+    private final RequestScheduler scheduler;
+    private boolean released = false;
+
+    SlotReleasingStream(InputStream in, RequestScheduler scheduler) {
+      super(in);
+      this.scheduler = scheduler;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        if (!released) {
+          released = true;
+          scheduler.release();
+        }
+      }
+    }
+  }
+
+  /**
+   * Builder for configuring a scheduler.
+   */
+  public static class Builder {
+    // ENTSO-E allows 400 requests per minute per token, stay well below it
+    private double requestsPerMinute = 300;
+    private int burst = 20;
+    private int maxInFlight = 6;
+    private int maxAttempts = 5;
+    private Duration baseBackoff = Duration.ofMillis(500);
+    private Duration maxBackoff = Duration.ofSeconds(30);
+
+    /**
+     * Set the token bucket.
+     *
+     * @param requestsPerMinute Rate the bucket is refilled at
+     * @param burst Size of the bucket, the number of requests sent at once after idling
+     * @return This builder
+     */
+    public Builder rateLimit(double requestsPerMinute, int burst) {
+      if (requestsPerMinute <= 0 || burst < 1) {
+        throw new IllegalArgumentException("Rate and burst must be positive");
+      }
+      this.requestsPerMinute = requestsPerMinute;
+      this.burst = burst;
+      return this;
+    }
+
+    /**
+     * Set how many requests may be in flight at once.
+     *
+     * @param maxInFlight Maximum number of open requests
+     * @return This builder
+     */
+    public Builder maxInFlight(int maxInFlight) {
+      if (maxInFlight < 1) {
+        throw new IllegalArgumentException("At least one request must be allowed");
+      }
+      this.maxInFlight = maxInFlight;
+      return this;
+    }
+
+    /**
+     * Set the retry policy for throttled responses.
+     *
+     * @param maxAttempts Maximum number of attempts, including the first
+     * @param baseBackoff Backoff window after the first failed attempt, doubled after each
+     * @param maxBackoff Largest backoff window
+     * @return This builder
+     */
+    public Builder retry(int maxAttempts, Duration baseBackoff, Duration maxBackoff) {
+      if (maxAttempts < 1) {
+        throw new IllegalArgumentException("At least one attempt must be allowed");
+      }
+      this.maxAttempts = maxAttempts;
+      this.baseBackoff = baseBackoff;
+      this.maxBackoff = maxBackoff;
+      return this;
+    }
+
+    public RequestScheduler build() {
+      return new RequestScheduler(this);
+    }
+  }
+}
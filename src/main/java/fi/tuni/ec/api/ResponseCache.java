@@ -0,0 +1,378 @@
+package fi.tuni.ec.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent on-disk cache for raw ENTSO-E responses.
+ * Entries are keyed by area domain, document type and period. Periods that ended a few days
+ * ago no longer change and are kept until evicted, more recent periods expire after a short
+ * TTL since their data may still be published late. The cache is bounded by size and evicts
+ * the least recently used entries first. Every entry is stored with a CRC32 checksum,
+ * corrupted entries are dropped on read. Only the index is locked, files are read and written
+ * outside the lock so that concurrent fetches do not wait for each other's disk I/O.
+ * Entries stored by prefetching are counted apart until they are read, so prefetching can be
+ * kept to a budget of its own.
+ */
+public class ResponseCache {
+
+  private static final int MAGIC = 0x45435243; // "ECRC"
+  private static final String SUFFIX = ".bin";
+  // Days after its end a period is taken as final, e.g. load is often published late
+  private static final int SETTLE_DAYS = 2;
+  private static final DateTimeFormatter periodDateFormatter =
+      DateTimeFormatter.ofPattern("yyyyMMdd");
+
+  private static ResponseCache shared;
+
+  private final Path directory;
+  private final long maxBytes;
+  private final Duration shortTtl;
+  private final Clock clock;
+  // File name -> size in bytes, in least recently used order, guarded by this
+  private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long totalBytes = 0;
+  // Prefetched entries not read since, guarded by this
+  private final Set<String> prefetched = new HashSet<>();
+  private long prefetchedBytes = 0;
+  private boolean enabled = true;
+
+  /**
+   * Get the cache shared by all services, stored under the user's data directory.
+   *
+   * @return The shared cache
+   */
+  public static synchronized ResponseCache getShared() {
+    if (shared == null) {
+      shared = new ResponseCache(
+          defaultDirectory(), 256L * 1024 * 1024, Duration.ofMinutes(15), Clock.systemUTC());
+    }
+    return shared;
+  }
+
+  /**
+   * Create a cache in the given directory.
+   *
+   * @param directory Directory the entries are stored in
+   * @param maxBytes Maximum total size of the entries
+   * @param shortTtl Time to live for entries of periods reaching today or later
+   * @param clock Clock used for expiry and deciding which periods are in the past
+   */
+  public ResponseCache(Path directory, long maxBytes, Duration shortTtl, Clock clock) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.shortTtl = shortTtl;
+    this.clock = clock;
+    try {
+      Files.createDirectories(directory);
+      loadIndex();
+    } catch (IOException e) {
+      System.out.println("Response cache disabled: " + e.getMessage());
+      enabled = false;
+    }
+  }
+
+  /**
+   * Default cache directory under the user's data directory.
+   *
+   * @return Path of the cache directory
+   */
+  public static Path defaultDirectory() {
+    String os = System.getProperty("os.name", "").toLowerCase();
+    String home = System.getProperty("user.home");
+    Path base;
+    if (os.contains("win") && System.getenv("LOCALAPPDATA") != null) {
+      base = Paths.get(System.getenv("LOCALAPPDATA"), "ECTrack");
+    } else if (os.contains("mac")) {
+      base = Paths.get(home, "Library", "Application Support", "ECTrack");
+    } else if (System.getenv("XDG_DATA_HOME") != null) {
+      base = Paths.get(System.getenv("XDG_DATA_HOME"), "ectrack");
+    } else {
+      base = Paths.get(home, ".local", "share", "ectrack");
+    }
+    return base.resolve("cache");
+  }
+
+  /**
+   * Get a cached response.
+   *
+   * @param areaDomain The area domain
+   * @param docType The document type
+   * @param periodStart The start date of the period (format: yyyyMMddHHmm)
+   * @param periodEnd The end date of the period (format: yyyyMMddHHmm)
+   * @return The cached response body or null if not cached, expired or corrupted
+   */
+  public byte[] get(
+      String areaDomain,
+      String docType,
+      String periodStart,
+      String periodEnd) {
+    String name = fileName(areaDomain, docType, periodStart, periodEnd);
+    // Lookup with get so the entry moves to the most recently used end
+    synchronized (this) {
+      Long size = entries.get(name);
+      if (!enabled || size == null) {
+        return null;
+      }
+      if (prefetched.remove(name)) {
+        prefetchedBytes -= size;
+      }
+    }
+
+    Path file = directory.resolve(name);
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Invalid header");
+      }
+      long expiresAt = in.readLong();
+      long checksum = in.readLong();
+      byte[] body = in.readNBytes(in.readInt());
+
+      CRC32 crc = new CRC32();
+      crc.update(body);
+      if (crc.getValue() != checksum) {
+        throw new IOException("Checksum mismatch");
+      }
+      if (clock.millis() >= expiresAt) {
+        remove(name);
+        return null;
+      }
+
+      // Last modified time doubles as the access time for LRU order across restarts
+      Files.setLastModifiedTime(file, FileTime.fromMillis(clock.millis()));
+      return body;
+    } catch (NoSuchFileException e) {
+      // Evicted by another thread in the meantime
+      forget(name);
+      return null;
+    } catch (IOException e) {
+      System.out.println("Dropping cache entry " + name + ": " + e.getMessage());
+      remove(name);
+      return null;
+    }
+  }
+
+  /**
+   * Store a response.
+   *
+   * @param areaDomain The area domain
+   * @param docType The document type
+   * @param periodStart The start date of the period (format: yyyyMMddHHmm)
+   * @param periodEnd The end date of the period (format: yyyyMMddHHmm)
+   * @param body The response body
+   */
+  public void put(
+      String areaDomain,
+      String docType,
+      String periodStart,
+      String periodEnd,
+      byte[] body) {
+    put(areaDomain, docType, periodStart, periodEnd, body, false);
+  }
+
+  /**
+   * Store a response, counting it as prefetched until it is read.
+   *
+   * @param areaDomain The area domain
+   * @param docType The document type
+   * @param periodStart The start date of the period (format: yyyyMMddHHmm)
+   * @param periodEnd The end date of the period (format: yyyyMMddHHmm)
+   * @param body The response body
+   * @param prefetch true if the response was fetched ahead of being needed
+   */
+  public void put(
+      String areaDomain,
+      String docType,
+      String periodStart,
+      String periodEnd,
+      byte[] body,
+      boolean prefetch) {
+    synchronized (this) {
+      if (!enabled || body.length > maxBytes) {
+        return;
+      }
+    }
+    String name = fileName(areaDomain, docType, periodStart, periodEnd);
+    long expiresAt = isImmutable(periodEnd)
+        ? Long.MAX_VALUE
+        : clock.millis() + shortTtl.toMillis();
+
+    CRC32 crc = new CRC32();
+    crc.update(body);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length + 24);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(MAGIC);
+      out.writeLong(expiresAt);
+      out.writeLong(crc.getValue());
+      out.writeInt(body.length);
+      out.write(body);
+    } catch (IOException e) {
+      return;
+    }
+
+    try {
+      // Write to a temporary file first so a crash never leaves a half written entry
+      Path file = directory.resolve(name);
+      Path temp = Files.createTempFile(directory, name, ".tmp");
+      Files.write(temp, bytes.toByteArray());
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      System.out.println("Error writing cache entry " + name + ": " + e.getMessage());
+      return;
+    }
+
+    List<String> evicted;
+    synchronized (this) {
+      Long previous = entries.put(name, (long) bytes.size());
+      totalBytes += bytes.size() - (previous == null ? 0 : previous);
+      if (previous != null && prefetched.remove(name)) {
+        prefetchedBytes -= previous;
+      }
+      if (prefetch) {
+        prefetched.add(name);
+        prefetchedBytes += bytes.size();
+      }
+      evicted = evict();
+    }
+    evicted.forEach(this::deleteQuietly);
+  }
+
+  /**
+   * Remove all entries.
+   */
+  public void clear() {
+    List<String> names;
+    synchronized (this) {
+      names = new ArrayList<>(entries.keySet());
+      entries.clear();
+      totalBytes = 0;
+      prefetched.clear();
+      prefetchedBytes = 0;
+    }
+    names.forEach(this::deleteQuietly);
+  }
+
+  public synchronized long size() {
+    return totalBytes;
+  }
+
+  /**
+   * Total size of prefetched entries that have not been read yet.
+   *
+   * @return Size in bytes
+   */
+  public synchronized long getPrefetchedBytes() {
+    return prefetchedBytes;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Check if a period ended long enough ago that its data no longer changes.
+   *
+   * @param periodEnd The end date of the period (format: yyyyMMddHHmm)
+   * @return true if the period ended more than SETTLE_DAYS full days before today
+   */
+  private boolean isImmutable(String periodEnd) {
+    LocalDate endDate = LocalDate.parse(periodEnd.substring(0, 8), periodDateFormatter);
+    return endDate.isBefore(LocalDate.now(clock).minusDays(SETTLE_DAYS));
+  }
+
+  private static String fileName(
+      String areaDomain,
+      String docType,
+      String periodStart,
+      String periodEnd) {
+    return areaDomain + "_" + docType + "_" + periodStart + "_" + periodEnd + SUFFIX;
+  }
+
+  /**
+   * Read existing entries from disk, oldest accessed first.
+   */
+  private void loadIndex() throws IOException {
+    List<Path> files;
+    try (Stream<Path> list = Files.list(directory)) {
+      files = new ArrayList<>(list.filter(path -> path.toString().endsWith(SUFFIX)).toList());
+    }
+    files.sort(Comparator.comparing(ResponseCache::lastModified));
+    for (Path file : files) {
+      long size = Files.size(file);
+      entries.put(file.getFileName().toString(), size);
+      totalBytes += size;
+    }
+    evict().forEach(this::deleteQuietly);
+  }
+
+  private static FileTime lastModified(Path path) {
+    try {
+      return Files.getLastModifiedTime(path);
+    } catch (IOException e) {
+      return FileTime.fromMillis(0);
+    }
+  }
+
+  // Drop least recently used entries from the index, the caller deletes their files
+  private List<String> evict() {
+    List<String> evicted = new ArrayList<>();
+    Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+    while (totalBytes > maxBytes && it.hasNext()) {
+      Map.Entry<String, Long> eldest = it.next();
+      it.remove();
+      totalBytes -= eldest.getValue();
+      if (prefetched.remove(eldest.getKey())) {
+        prefetchedBytes -= eldest.getValue();
+      }
+      evicted.add(eldest.getKey());
+    }
+    return evicted;
+  }
+
+  private synchronized void forget(String name) {
+    Long size = entries.remove(name);
+    if (size != null) {
+      totalBytes -= size;
+      if (prefetched.remove(name)) {
+        prefetchedBytes -= size;
+      }
+    }
+  }
+
+  private void remove(String name) {
+    forget(name);
+    deleteQuietly(name);
+  }
+
+  private void deleteQuietly(String name) {
+    try {
+      Files.deleteIfExists(directory.resolve(name));
+    } catch (IOException e) {
+      System.out.println("Error deleting cache entry " + name + ": " + e.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,293 @@
+package fi.tuni.ec.api;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory store of daily and monthly aggregates per country.
+ * Hourly data is rolled up into days in a single pass as it is ingested, and a month is rolled
+ * up once all of its days are complete and again whenever one of its days is replaced.
+ * Long-range views read the rollups instead of regrouping the raw points, so a year view only
+ * has to fetch the months it has not seen.
+ * A day is complete when it is in the past and its points cover all of its 24 hours. Days
+ * reaching today are kept but never treated as complete since more data may still arrive.
+ */
+public class RollupStore {
+
+  // Days are fixed UTC days, so DST never changes their length. Periods feeding the rollups
+  // must end at midnight after their last day to cover its final hour.
+  private static final int COMPLETE_DAY_MINUTES = 24 * 60;
+
+  private static RollupStore shared;
+
+  private final Clock clock;
+  private final Map<String, TreeMap<LocalDate, Rollup>> days = new HashMap<>();
+  private final Map<String, Map<YearMonth, Rollup>> months = new HashMap<>();
+
+  /**
+   * Get the store shared by all views.
+   *
+   * @return The shared store
+   */
+  public static synchronized RollupStore getShared() {
+    if (shared == null) {
+      shared = new RollupStore(Clock.systemUTC());
+    }
+    return shared;
+  }
+
+  /**
+   * Create an empty store.
+   *
+   * @param clock Clock used for deciding which days are in the past
+   */
+  public RollupStore(Clock clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Roll up data of a country into days and months.
+   * Days present in the data replace the stored rollups of the same days.
+   *
+   * @param country The country of the data
+   * @param dataList Data to ingest, in any order
+   */
+  public synchronized void ingest(String country, List<ApiData> dataList) {
+    if (dataList.isEmpty()) {
+      return;
+    }
+    long first = Long.MAX_VALUE;
+    long last = Long.MIN_VALUE;
+    for (ApiData data : dataList) {
+      long minute = TimeSeries.toEpochMinute(data.date);
+      first = Math.min(first, minute);
+      last = Math.max(last, minute);
+    }
+
+    LocalDate firstDay = LocalDate.ofEpochDay(Math.floorDiv(first, 1440));
+    LocalDate lastDay = LocalDate.ofEpochDay(Math.floorDiv(last, 1440));
+    ingest(country, Aggregator.days(firstDay, lastDay).aggregateParallel(dataList));
+  }
+
+  /**
+   * Roll up data of a country that has already been aggregated into days.
+   * Days with data replace the stored rollups of the same days.
+   *
+   * @param country The country of the data
+   * @param daily Aggregates with one bucket per day, e.g. from Aggregator.days
+   */
+  public synchronized void ingest(String country, Aggregator.Aggregates daily) {
+    Map<LocalDate, Rollup> ingested = new HashMap<>();
+    for (int i = 0; i < daily.size(); i++) {
+      if (daily.hasData(i)) {
+        ingested.put(
+            LocalDate.ofEpochDay(Math.floorDiv(daily.getStartMinute(i), 1440)),
+            new Rollup(daily, i));
+      }
+    }
+
+    TreeMap<LocalDate, Rollup> countryDays = days.computeIfAbsent(country, c -> new TreeMap<>());
+    countryDays.putAll(ingested);
+
+    // Months are only stored while every day is complete, partial months are summed on read.
+    // A replaced day changes its month, so every month touched is rolled up again.
+    Map<YearMonth, Rollup> countryMonths = months.computeIfAbsent(country, c -> new HashMap<>());
+    for (YearMonth month : ingested.keySet().stream().map(YearMonth::from).distinct().toList()) {
+      if (hasDays(country, month.atDay(1), month.atEndOfMonth())) {
+        countryMonths.put(month, summarize(country, month.atDay(1), month.atEndOfMonth()));
+      } else {
+        countryMonths.remove(month);
+      }
+    }
+  }
+
+  /**
+   * Check whether every day in the range is complete.
+   *
+   * @param country The country
+   * @param from First day of the range
+   * @param to Last day of the range
+   * @return true if the range can be read without fetching
+   */
+  public synchronized boolean hasDays(String country, LocalDate from, LocalDate to) {
+    TreeMap<LocalDate, Rollup> countryDays = days.get(country);
+    if (countryDays == null) {
+      return false;
+    }
+    LocalDate today = LocalDate.now(clock);
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      Rollup rollup = countryDays.get(date);
+      if (!date.isBefore(today)
+          || rollup == null
+          || rollup.coveredMinutes < COMPLETE_DAY_MINUTES) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Get the rollup of a complete month.
+   *
+   * @param country The country
+   * @param month The month
+   * @return Rollup of the month, null if the month is not complete
+   */
+  public synchronized Rollup getMonth(String country, YearMonth month) {
+    Map<YearMonth, Rollup> countryMonths = months.get(country);
+    return countryMonths == null ? null : countryMonths.get(month);
+  }
+
+  /**
+   * Get the rollup of each day in the range.
+   *
+   * @param country The country
+   * @param from First day of the range
+   * @param to Last day of the range
+   * @return One point per day, values missing from a day are NaN
+   */
+  public synchronized List<ApiData> getDaily(String country, LocalDate from, LocalDate to) {
+    TreeMap<LocalDate, Rollup> countryDays = days.getOrDefault(country, new TreeMap<>());
+    List<ApiData> daily = new ArrayList<>();
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      Rollup rollup = countryDays.getOrDefault(date, new Rollup());
+      daily.add(rollup.toApiData(date.atStartOfDay(), 1440));
+    }
+    return daily;
+  }
+
+  /**
+   * Combine the stored days of a range into a single rollup.
+   *
+   * @param country The country
+   * @param from First day of the range
+   * @param to Last day of the range
+   * @return Rollup of the range, empty if no days are stored
+   */
+  public synchronized Rollup summarize(String country, LocalDate from, LocalDate to) {
+    Rollup total = new Rollup();
+    TreeMap<LocalDate, Rollup> countryDays = days.get(country);
+    if (countryDays != null) {
+      for (Rollup rollup : countryDays.subMap(from, true, to, true).values()) {
+        total.add(rollup);
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Remove all rollups.
+   */
+  public synchronized void clear() {
+    days.clear();
+    months.clear();
+  }
+
+  /**
+   * Aggregate of price, usage and temperature over a period.
+   * Sums and counts are kept instead of means so rollups can be combined exactly.
+   */
+  public static class Rollup {
+    private double priceSum = 0;
+    private int priceCount = 0;
+    private double minPrice = Double.NaN;
+    private double maxPrice = Double.NaN;
+    private double usageSum = 0;
+    private int usageCount = 0;
+    private double temperatureSum = 0;
+    private int temperatureCount = 0;
+    private long coveredMinutes = 0;
+    // Zone mean price times zone usage and the zone usage, only set for merged zones
+    private double zonePriceSum = 0;
+    private double zoneUsageSum = 0;
+
+    /**
+     * Create an empty rollup.
+     */
+    public Rollup() {
+    }
+
+    private Rollup(Aggregator.Aggregates aggregates, int i) {
+      priceSum = aggregates.priceSum[i];
+      priceCount = aggregates.priceCount[i];
+      minPrice = aggregates.minPrice[i];
+      maxPrice = aggregates.maxPrice[i];
+      usageSum = aggregates.usageSum[i];
+      usageCount = aggregates.usageCount[i];
+      temperatureSum = aggregates.temperatureSum[i];
+      temperatureCount = aggregates.temperatureCount[i];
+      coveredMinutes = aggregates.coveredMinutes[i];
+      zonePriceSum = aggregates.zonePriceSum[i];
+      zoneUsageSum = aggregates.zoneUsageSum[i];
+    }
+
+    private void add(Rollup other) {
+      priceSum += other.priceSum;
+      priceCount += other.priceCount;
+      if (other.priceCount > 0) {
+        minPrice = Double.isNaN(minPrice) ? other.minPrice : Math.min(minPrice, other.minPrice);
+        maxPrice = Double.isNaN(maxPrice) ? other.maxPrice : Math.max(maxPrice, other.maxPrice);
+      }
+      usageSum += other.usageSum;
+      usageCount += other.usageCount;
+      temperatureSum += other.temperatureSum;
+      temperatureCount += other.temperatureCount;
+      coveredMinutes += other.coveredMinutes;
+      zonePriceSum += other.zonePriceSum;
+      zoneUsageSum += other.zoneUsageSum;
+    }
+
+    /**
+     * Mean price of the period, weighted by the usage of each zone if zones were merged.
+     *
+     * @return The mean price, NaN if the period has no price
+     */
+    public double getMeanPrice() {
+      if (zoneUsageSum > 0) {
+        return zonePriceSum / zoneUsageSum;
+      }
+      return priceCount > 0 ? priceSum / priceCount : Double.NaN;
+    }
+
+    public double getMinPrice() {
+      return minPrice;
+    }
+
+    public double getMaxPrice() {
+      return maxPrice;
+    }
+
+    public double getUsage() {
+      return usageCount > 0 ? usageSum : Double.NaN;
+    }
+
+    public double getMeanTemperature() {
+      return temperatureCount > 0 ? temperatureSum / temperatureCount : Double.NaN;
+    }
+
+    /**
+     * Convert the rollup to a single point. Missing price and usage are NaN and a missing
+     * temperature is null, so they are not drawn as zero.
+     *
+     * @param date Time of the point
+     * @param interval Length of the period in minutes
+     * @return ApiData of the rollup
+     */
+    public ApiData toApiData(LocalDateTime date, int interval) {
+      var data = new ApiData();
+      data.date = date;
+      data.interval = interval;
+      data.price = priceCount > 0 ? getMeanPrice() : Double.NaN;
+      data.usage = usageCount > 0 ? usageSum : Double.NaN;
+      data.temperatureMean = temperatureCount > 0 ? temperatureSum / temperatureCount : null;
+      return data;
+    }
+  }
+}
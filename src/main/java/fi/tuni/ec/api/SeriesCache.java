@@ -0,0 +1,200 @@
+package fi.tuni.ec.api;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.management.NotificationEmitter;
+
+/**
+ * In-memory cache of fetched series, keyed by country and period.
+ * The cache is bounded by the estimated heap use of the series and evicts the least recently
+ * used entries first. Series of periods reaching today or later expire after a short TTL since
+ * their data may still change. The shared cache is emptied when the heap is still nearly full
+ * after a garbage collection. Cached series are shared, callers must not modify their arrays.
+ */
+public class SeriesCache {
+
+  // Rough size of a map entry, its key and the bookkeeping of an entry
+  private static final long ENTRY_OVERHEAD = 200;
+
+  private static SeriesCache shared;
+
+  private final long maxBytes;
+  private final Duration liveTtl;
+  private final Clock clock;
+  // Key -> entry, in least recently used order
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long totalBytes = 0;
+  private long hits = 0;
+  private long misses = 0;
+
+  /**
+   * Get the cache shared by all services. It is released under heap pressure.
+   *
+   * @return The shared cache
+   */
+  public static synchronized SeriesCache getShared() {
+    if (shared == null) {
+      shared = new SeriesCache(64L * 1024 * 1024, Duration.ofMinutes(5), Clock.systemUTC());
+      releaseOnHeapPressure(shared, 0.85);
+    }
+    return shared;
+  }
+
+  /**
+   * Create a cache.
+   *
+   * @param maxBytes Maximum estimated heap use of the cached series
+   * @param liveTtl Time to live for series of periods reaching today or later
+   * @param clock Clock used for expiry
+   */
+  public SeriesCache(long maxBytes, Duration liveTtl, Clock clock) {
+    this.maxBytes = maxBytes;
+    this.liveTtl = liveTtl;
+    this.clock = clock;
+  }
+
+  /**
+   * Get a cached series.
+   *
+   * @param key Key of the series
+   * @return The series, null if not cached or expired
+   */
+  public synchronized TimeSeries get(String key) {
+    Entry entry = entries.get(key);
+    if (entry != null && entry.expiresAt <= clock.millis()) {
+      remove(key);
+      entry = null;
+    }
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.series;
+  }
+
+  /**
+   * Cache a series.
+   *
+   * @param key Key of the series
+   * @param series The series
+   * @param live true if the period reaches today or later and the series may still change
+   */
+  public synchronized void put(String key, TimeSeries series, boolean live) {
+    long bytes = series.estimatedBytes() + ENTRY_OVERHEAD;
+    if (bytes > maxBytes) {
+      return;
+    }
+    long expiresAt = live ? clock.millis() + liveTtl.toMillis() : Long.MAX_VALUE;
+    Entry previous = entries.put(key, new Entry(series, bytes, expiresAt));
+    totalBytes += bytes - (previous == null ? 0 : previous.bytes);
+    trimTo(maxBytes);
+  }
+
+  /**
+   * Evict least recently used entries until the cache holds at most the given size.
+   *
+   * @param bytes Estimated size to keep
+   */
+  public synchronized void trimTo(long bytes) {
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (totalBytes > bytes && it.hasNext()) {
+      Map.Entry<String, Entry> eldest = it.next();
+      it.remove();
+      totalBytes -= eldest.getValue().bytes;
+    }
+  }
+
+  /**
+   * Remove all entries.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    totalBytes = 0;
+  }
+
+  /**
+   * Estimated heap use of the cached series.
+   *
+   * @return Size in bytes
+   */
+  public synchronized long size() {
+    return totalBytes;
+  }
+
+  public synchronized int count() {
+    return entries.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  private void remove(String key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      totalBytes -= entry.bytes;
+    }
+  }
+
+  /**
+   * Empty a cache whenever a heap pool is still above the given share of its maximum after a
+   * garbage collection.
+   *
+   * @param cache The cache to release
+   * @param threshold Share of the pool's maximum, between 0 and 1
+   */
+  static void releaseOnHeapPressure(SeriesCache cache, double threshold) {
+    boolean watched = false;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      long max = pool.getUsage() == null ? -1 : pool.getUsage().getMax();
+      if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()
+          && max > 0) {
+        pool.setCollectionUsageThreshold((long) (max * threshold));
+        watched = true;
+      }
+    }
+    if (!watched) {
+      return;
+    }
+
+    NotificationEmitter emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+    emitter.addNotificationListener((notification, handback) -> {
+      String type = notification.getType();
+      if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+        System.out.println("Heap nearly full, releasing " + cache.size() + " bytes of series");
+        cache.clear();
+      }
+    }, null, null);
+  }
+
+  /**
+   * A cached series.
+   */
+  private static class Entry {
+    private final TimeSeries series;
+    private final long bytes;
+    private final long expiresAt;
+
+    Entry(TimeSeries series, long bytes, long expiresAt) {
+      this.series = series;
+      this.bytes = bytes;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,309 @@
+package fi.tuni.ec.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Merges price and usage data on their timestamps.
+ * Both inputs are first resampled to a common step, the coarser of the two resolutions, and
+ * then joined on time. Points present in only one of the inputs are kept with the other value
+ * missing, so gaps in either document no longer shift the rest of the data. Points repeated
+ * with the same timestamp, e.g. from overlapping documents, are only counted once.
+ */
+public class SeriesMerger {
+
+  /**
+   * How load values are combined when several points fall into one step.
+   * MEAN keeps the unit of the source (MW), SUM adds the points together.
+   */
+  public enum LoadResampling {
+    SUM, MEAN
+  }
+
+  private SeriesMerger() {
+  }
+
+  /**
+   * Merge price and usage data into a single series.
+   * Prices falling into the same step are averaged, loads are summed or averaged.
+   *
+   * @param priceData List of price data
+   * @param usageData List of usage data
+   * @param loadResampling How to combine loads within a step
+   * @return TimeSeries with price and usage on a common grid
+   */
+  public static TimeSeries merge(
+      List<ApiData> priceData,
+      List<ApiData> usageData,
+      LoadResampling loadResampling) {
+    // An empty side has no resolution, the step comes from the other side only
+    int step = Math.max(coarsestInterval(priceData), coarsestInterval(usageData));
+    if (step == 0) {
+      step = 60;
+    }
+    Resampled prices = resample(priceData, step, true, false);
+    Resampled usages = resample(usageData, step, false, loadResampling == LoadResampling.MEAN);
+
+    if (prices.size == 0 && usages.size == 0) {
+      return new TimeSeries(0, step, 0);
+    }
+
+    long first = Long.MAX_VALUE;
+    long last = Long.MIN_VALUE;
+    if (prices.size > 0) {
+      first = prices.minutes[0];
+      last = prices.minutes[prices.size - 1];
+    }
+    if (usages.size > 0) {
+      first = Math.min(first, usages.minutes[0]);
+      last = Math.max(last, usages.minutes[usages.size - 1]);
+    }
+
+    // Both sides are sorted on time, walk them together onto the output grid
+    TimeSeries series = new TimeSeries(first, step, (int) ((last - first) / step) + 1);
+    double[] price = series.getPrice();
+    double[] usage = series.getUsage();
+    int i = 0;
+    int j = 0;
+    while (i < prices.size || j < usages.size) {
+      long priceMinute = i < prices.size ? prices.minutes[i] : Long.MAX_VALUE;
+      long usageMinute = j < usages.size ? usages.minutes[j] : Long.MAX_VALUE;
+      long minute = Math.min(priceMinute, usageMinute);
+      int index = series.indexOf(minute);
+      if (priceMinute == minute) {
+        price[index] = prices.values[i++];
+      }
+      if (usageMinute == minute) {
+        usage[index] = usages.values[j++];
+      }
+    }
+    return series;
+  }
+
+  /**
+   * Largest interval of the data in minutes, 0 if no point has an interval.
+   */
+  private static int coarsestInterval(List<ApiData> dataList) {
+    int interval = 0;
+    for (ApiData data : dataList) {
+      if (data.interval != null) {
+        interval = Math.max(interval, data.interval);
+      }
+    }
+    return interval;
+  }
+
+  /**
+   * Resample data to the given step in a single pass.
+   * Of points with the same timestamp only the last one is used.
+   *
+   * @param dataList Data to resample
+   * @param step Step in minutes
+   * @param isPrice true to read the price, false to read the usage
+   * @param average true to average the values within a step, false to sum them
+   * @return Sorted step start times and values
+   */
+  private static Resampled resample(
+      List<ApiData> dataList,
+      int step,
+      boolean isPrice,
+      boolean average) {
+    List<ApiData> sorted = dataList;
+    if (!isSorted(dataList)) {
+      sorted = new ArrayList<>(dataList);
+      sorted.sort(Comparator.comparing(data -> data.date));
+    }
+
+    Resampled result = new Resampled(sorted.size());
+    long bucket = Long.MIN_VALUE;
+    double sum = 0;
+    int count = 0;
+    for (int k = 0; k < sorted.size(); k++) {
+      ApiData data = sorted.get(k);
+      if (k + 1 < sorted.size() && sorted.get(k + 1).date.equals(data.date)) {
+        continue;
+      }
+      long minute = TimeSeries.toEpochMinute(data.date);
+      long dataBucket = Math.floorDiv(minute, step) * step;
+      if (dataBucket != bucket) {
+        if (count > 0) {
+          result.add(bucket, average ? sum / count : sum);
+        }
+        bucket = dataBucket;
+        sum = 0;
+        count = 0;
+      }
+      sum += isPrice ? data.price : data.usage;
+      count++;
+    }
+    if (count > 0) {
+      result.add(bucket, average ? sum / count : sum);
+    }
+    return result;
+  }
+
+  private static boolean isSorted(List<ApiData> dataList) {
+    for (int i = 1; i < dataList.size(); i++) {
+      if (dataList.get(i).date.isBefore(dataList.get(i - 1).date)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Merge the series of several bidding zones into a country series.
+   * Zones are resampled to the coarsest step among them and joined on time. Load is summed
+   * over the zones and price is the load-weighted average, falling back to the plain average
+   * for steps where no zone reports load. Load of a finer zone is combined within a step as in
+   * merge.
+   *
+   * @param zones Series of each zone
+   * @param loadResampling How to combine loads of a zone within a step
+   * @return TimeSeries of the whole country
+   */
+  public static TimeSeries mergeZones(
+      Collection<TimeSeries> zones,
+      LoadResampling loadResampling) {
+    int step = 0;
+    long first = Long.MAX_VALUE;
+    long last = Long.MIN_VALUE;
+    for (TimeSeries zone : zones) {
+      // Empty zones have no resolution of their own
+      if (zone.size() > 0) {
+        step = Math.max(step, zone.getStepMinutes());
+      }
+    }
+    if (step == 0) {
+      return new TimeSeries(0, 60, 0);
+    }
+
+    List<TimeSeries> resampled = new ArrayList<>(zones.size());
+    for (TimeSeries zone : zones) {
+      TimeSeries series = coarsen(zone, step, loadResampling == LoadResampling.SUM);
+      resampled.add(series);
+      if (series.size() > 0) {
+        first = Math.min(first, series.getStartMinute());
+        last = Math.max(last, series.minuteAt(series.size() - 1));
+      }
+    }
+    if (first == Long.MAX_VALUE) {
+      return new TimeSeries(0, step, 0);
+    }
+
+    TimeSeries country = new TimeSeries(first, step, (int) ((last - first) / step) + 1);
+    int size = country.size();
+    double[] usageSum = new double[size];
+    double[] weightedPrice = new double[size];
+    double[] weight = new double[size];
+    double[] priceSum = new double[size];
+    int[] priceCount = new int[size];
+    boolean[] hasUsage = new boolean[size];
+
+    for (TimeSeries zone : resampled) {
+      double[] price = zone.getPrice();
+      double[] usage = zone.getUsage();
+      int offset = country.indexOf(zone.getStartMinute());
+      for (int i = 0; i < zone.size(); i++) {
+        int index = offset + i;
+        boolean usageKnown = !Double.isNaN(usage[i]);
+        if (usageKnown) {
+          usageSum[index] += usage[i];
+          hasUsage[index] = true;
+        }
+        if (!Double.isNaN(price[i])) {
+          priceSum[index] += price[i];
+          priceCount[index]++;
+          if (usageKnown && usage[i] > 0) {
+            weightedPrice[index] += price[i] * usage[i];
+            weight[index] += usage[i];
+          }
+        }
+      }
+    }
+
+    double[] price = country.getPrice();
+    double[] usage = country.getUsage();
+    for (int i = 0; i < size; i++) {
+      if (weight[i] > 0) {
+        price[i] = weightedPrice[i] / weight[i];
+      } else if (priceCount[i] > 0) {
+        price[i] = priceSum[i] / priceCount[i];
+      }
+      if (hasUsage[i]) {
+        usage[i] = usageSum[i];
+      }
+    }
+    return country;
+  }
+
+  /**
+   * Resample a series to a coarser step, averaging price and temperature within each step.
+   *
+   * @param series Series to resample
+   * @param step Step in minutes, a multiple of the series step
+   * @param sumUsage true to sum the usage within a step, false to average it
+   * @return The series itself if it already has the step, otherwise a new series
+   */
+  private static TimeSeries coarsen(TimeSeries series, int step, boolean sumUsage) {
+    if (series.getStepMinutes() == step || series.size() == 0) {
+      return series;
+    }
+    long first = Math.floorDiv(series.getStartMinute(), step) * step;
+    long last = series.minuteAt(series.size() - 1);
+    TimeSeries result = new TimeSeries(first, step, (int) ((last - first) / step) + 1);
+
+    double[][] source = {series.getPrice(), series.getUsage(), series.getTemperature()};
+    double[][] target = {result.getPrice(), result.getUsage(), result.getTemperature()};
+    for (int metric = 0; metric < source.length; metric++) {
+      boolean average = !(sumUsage && metric == 1);
+      double sum = 0;
+      int count = 0;
+      int bucket = 0;
+      for (int i = 0; i < series.size(); i++) {
+        int index = result.indexOf(series.minuteAt(i));
+        if (index != bucket) {
+          target[metric][bucket] = combine(sum, count, average);
+          bucket = index;
+          sum = 0;
+          count = 0;
+        }
+        if (!Double.isNaN(source[metric][i])) {
+          sum += source[metric][i];
+          count++;
+        }
+      }
+      target[metric][bucket] = combine(sum, count, average);
+    }
+    return result;
+  }
+
+  private static double combine(double sum, int count, boolean average) {
+    if (count == 0) {
+      return Double.NaN;
+    }
+    return average ? sum / count : sum;
+  }
+
+  /**
+   * Resampled points of a single metric.
+   */
+  private static class Resampled {
+    private final long[] minutes;
+    private final double[] values;
+    private int size = 0;
+
+    Resampled(int capacity) {
+      minutes = new long[capacity];
+      values = new double[capacity];
+    }
+
+    void add(long minute, double value) {
+      minutes[size] = minute;
+      values[size] = value;
+      size++;
+    }
+  }
+}
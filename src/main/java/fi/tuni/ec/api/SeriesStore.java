@@ -0,0 +1,403 @@
+package fi.tuni.ec.api;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Local append-only store of fetched values, one segment file per area domain and metric.
+ * Every write appends a block holding the period it covers and its points sorted by time.
+ * The block headers form a sparse index that is kept in memory, so a range query only visits
+ * the blocks overlapping the range, binary searches the first point in the memory-mapped file
+ * and reads on sequentially. Points of later blocks replace points of earlier ones at the same
+ * time. Only periods before today are stored since later data may still change.
+ */
+public class SeriesStore {
+
+  private static final int MAGIC = 0x45435353; // "ECSS"
+  private static final int HEADER_BYTES = 24;
+  private static final int RECORD_BYTES = 20;
+  private static final String SUFFIX = ".seg";
+
+  private static SeriesStore shared;
+
+  private final Path directory;
+  private final Clock clock;
+  private final Map<String, Segment> segments = new HashMap<>();
+  private boolean enabled = true;
+
+  /**
+   * Get the store shared by all services, stored next to the response cache.
+   *
+   * @return The shared store
+   */
+  public static synchronized SeriesStore getShared() {
+    if (shared == null) {
+      shared = new SeriesStore(
+          ResponseCache.defaultDirectory().resolveSibling("store"), Clock.systemUTC());
+    }
+    return shared;
+  }
+
+  /**
+   * Create a store in the given directory.
+   *
+   * @param directory Directory the segment files are stored in
+   * @param clock Clock used for deciding which periods are in the past
+   */
+  public SeriesStore(Path directory, Clock clock) {
+    this.directory = directory;
+    this.clock = clock;
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      System.out.println("Series store disabled: " + e.getMessage());
+      enabled = false;
+    }
+  }
+
+  /**
+   * Read the points of a period if the store covers all of it.
+   *
+   * @param areaDomain The area domain
+   * @param metric The metric (e.g. price, usage or temperature)
+   * @param fromMinute Start of the period in minutes since epoch (UTC), inclusive
+   * @param toMinute End of the period in minutes since epoch (UTC), exclusive
+   * @return Points of the period in time order, null if the period is not fully stored
+   */
+  public synchronized List<Point> read(
+      String areaDomain,
+      String metric,
+      long fromMinute,
+      long toMinute) {
+    Segment segment = segment(areaDomain, metric);
+    if (segment == null || !segment.covers(fromMinute, toMinute)) {
+      return null;
+    }
+    try {
+      return segment.read(fromMinute, toMinute);
+    } catch (IOException e) {
+      System.out.println("Series store read failed: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Check whether a period is fully stored.
+   *
+   * @param areaDomain The area domain
+   * @param metric The metric
+   * @param fromMinute Start of the period in minutes since epoch (UTC), inclusive
+   * @param toMinute End of the period in minutes since epoch (UTC), exclusive
+   * @return true if every part of the period has been written
+   */
+  public synchronized boolean covers(
+      String areaDomain,
+      String metric,
+      long fromMinute,
+      long toMinute) {
+    Segment segment = segment(areaDomain, metric);
+    return segment != null && segment.covers(fromMinute, toMinute);
+  }
+
+  /**
+   * Get the parts of a period that are not stored yet.
+   *
+   * @param areaDomain The area domain
+   * @param metric The metric
+   * @param fromMinute Start of the period in minutes since epoch (UTC), inclusive
+   * @param toMinute End of the period in minutes since epoch (UTC), exclusive
+   * @return Missing intervals in order as {from, to} pairs, the whole period if the store is
+   *     unavailable
+   */
+  public synchronized List<long[]> missing(
+      String areaDomain,
+      String metric,
+      long fromMinute,
+      long toMinute) {
+    Segment segment = segment(areaDomain, metric);
+    if (segment == null) {
+      return fromMinute < toMinute ? List.of(new long[] {fromMinute, toMinute}) : List.of();
+    }
+    return segment.coverage.missing(fromMinute, toMinute);
+  }
+
+  /**
+   * Start of today in minutes since epoch (UTC). Periods from here on are never stored.
+   *
+   * @return Minutes since epoch
+   */
+  public long todayMinute() {
+    return LocalDate.now(clock).toEpochDay() * 1440;
+  }
+
+  /**
+   * Append the points of a fetched period. The period is clipped to end before today, points
+   * outside the clipped period are dropped. Only the time the points span is marked as stored,
+   * so parts of the period that came back empty (e.g. not yet published) are fetched again.
+   *
+   * @param areaDomain The area domain
+   * @param metric The metric
+   * @param fromMinute Start of the fetched period in minutes since epoch (UTC), inclusive
+   * @param toMinute End of the fetched period in minutes since epoch (UTC), exclusive
+   * @param points Points of the period in any order, NaN values are left out
+   */
+  public synchronized void append(
+      String areaDomain,
+      String metric,
+      long fromMinute,
+      long toMinute,
+      List<Point> points) {
+    long coverTo = Math.min(toMinute, todayMinute());
+    Segment segment = segment(areaDomain, metric);
+    if (segment == null) {
+      return;
+    }
+
+    List<Point> sorted = new ArrayList<>();
+    for (Point point : points) {
+      if (point.minute >= fromMinute && point.minute < coverTo && !Double.isNaN(point.value)) {
+        sorted.add(point);
+      }
+    }
+    sorted.sort(Comparator.comparingLong(point -> point.minute));
+    try {
+      // One block per run of points without a gap between them
+      int runStart = 0;
+      long runEnd = 0;
+      for (int i = 0; i < sorted.size(); i++) {
+        Point point = sorted.get(i);
+        if (i > runStart && point.minute > runEnd) {
+          segment.append(sorted.get(runStart).minute, runEnd, sorted.subList(runStart, i));
+          runStart = i;
+        }
+        long end = Math.min(point.minute + Math.max(point.interval, 1), coverTo);
+        runEnd = i == runStart ? end : Math.max(runEnd, end);
+      }
+      if (!sorted.isEmpty()) {
+        List<Point> run = sorted.subList(runStart, sorted.size());
+        segment.append(run.getFirst().minute, runEnd, run);
+      }
+    } catch (IOException e) {
+      // Callers use the fetched points directly, an unstored period is only fetched again
+      System.out.println("Series store write failed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Convert a period string of the API to minutes since epoch.
+   *
+   * @param period Period in UTC (format: yyyyMMddHHmm)
+   * @return Minutes since epoch
+   */
+  public static long toMinute(String period) {
+    return LocalDateTime.of(
+        Integer.parseInt(period.substring(0, 4)),
+        Integer.parseInt(period.substring(4, 6)),
+        Integer.parseInt(period.substring(6, 8)),
+        Integer.parseInt(period.substring(8, 10)),
+        Integer.parseInt(period.substring(10, 12))).toEpochSecond(ZoneOffset.UTC) / 60;
+  }
+
+  private Segment segment(String areaDomain, String metric) {
+    if (!enabled) {
+      return null;
+    }
+    String name = (areaDomain + "_" + metric).replaceAll("[^A-Za-z0-9_-]", "_") + SUFFIX;
+    Segment segment = segments.get(name);
+    if (segment == null) {
+      try {
+        segment = new Segment(directory.resolve(name));
+        segments.put(name, segment);
+      } catch (IOException e) {
+        System.out.println("Series store segment unavailable: " + e.getMessage());
+        return null;
+      }
+    }
+    return segment;
+  }
+
+  /**
+   * A stored value.
+   */
+  public static class Point {
+    private final long minute;
+    private final int interval;
+    private final double value;
+
+    /**
+     * Create a point.
+     *
+     * @param minute Time in minutes since epoch (UTC)
+     * @param interval Resolution in minutes
+     * @param value The value
+     */
+    public Point(long minute, int interval, double value) {
+      this.minute = minute;
+      this.interval = interval;
+      this.value = value;
+    }
+
+    public long getMinute() {
+      return minute;
+    }
+
+    public int getInterval() {
+      return interval;
+    }
+
+    public double getValue() {
+      return value;
+    }
+  }
+
+  /**
+   * Index entry of a block.
+   */
+  private static class Block {
+    private final long offset;
+    private final int count;
+    private final long coverFrom;
+    private final long coverTo;
+
+    Block(long offset, int count, long coverFrom, long coverTo) {
+      this.offset = offset;
+      this.count = count;
+      this.coverFrom = coverFrom;
+      this.coverTo = coverTo;
+    }
+  }
+
+  /**
+   * A segment file and its block index.
+   */
+  private static class Segment {
+    private final Path file;
+    private final List<Block> blocks = new ArrayList<>();
+    // Union of the periods of all blocks
+    private final IntervalSet coverage = new IntervalSet();
+    private long size;
+    private MappedByteBuffer mapped;
+
+    Segment(Path file) throws IOException {
+      this.file = file;
+      if (Files.exists(file)) {
+        loadIndex();
+      }
+    }
+
+    // Walk the block headers, a block cut short by a crash is truncated away
+    private void loadIndex() throws IOException {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+          StandardOpenOption.WRITE)) {
+        long fileSize = channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (offset + HEADER_BYTES <= fileSize) {
+          header.clear();
+          channel.read(header, offset);
+          header.flip();
+          int magic = header.getInt();
+          int count = header.getInt();
+          long coverFrom = header.getLong();
+          long coverTo = header.getLong();
+          long end = offset + HEADER_BYTES + (long) count * RECORD_BYTES;
+          if (magic != MAGIC || count < 0 || end > fileSize) {
+            break;
+          }
+          blocks.add(new Block(offset + HEADER_BYTES, count, coverFrom, coverTo));
+          coverage.add(coverFrom, coverTo);
+          offset = end;
+        }
+        if (offset < fileSize) {
+          channel.truncate(offset);
+        }
+        size = offset;
+      }
+    }
+
+    boolean covers(long fromMinute, long toMinute) {
+      return coverage.covers(fromMinute, toMinute);
+    }
+
+    List<Point> read(long fromMinute, long toMinute) throws IOException {
+      MappedByteBuffer buffer = map();
+      // Later blocks are applied last so their points win
+      TreeMap<Long, Point> points = new TreeMap<>();
+      for (Block block : blocks) {
+        if (block.count == 0 || block.coverTo <= fromMinute || block.coverFrom >= toMinute) {
+          continue;
+        }
+        int index = firstAtOrAfter(buffer, block, fromMinute);
+        for (; index < block.count; index++) {
+          int position = (int) (block.offset + (long) index * RECORD_BYTES);
+          long minute = buffer.getLong(position);
+          if (minute >= toMinute) {
+            break;
+          }
+          points.put(minute, new Point(
+              minute, buffer.getInt(position + 8), buffer.getDouble(position + 12)));
+        }
+      }
+      return new ArrayList<>(points.values());
+    }
+
+    private static int firstAtOrAfter(MappedByteBuffer buffer, Block block, long minute) {
+      int low = 0;
+      int high = block.count;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        long value = buffer.getLong((int) (block.offset + (long) middle * RECORD_BYTES));
+        if (value < minute) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    void append(long coverFrom, long coverTo, List<Point> points) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + points.size() * RECORD_BYTES);
+      buffer.putInt(MAGIC).putInt(points.size()).putLong(coverFrom).putLong(coverTo);
+      for (Point point : points) {
+        buffer.putLong(point.minute).putInt(point.interval).putDouble(point.value);
+      }
+      buffer.flip();
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE)) {
+        long offset = size;
+        while (buffer.hasRemaining()) {
+          offset += channel.write(buffer, offset);
+        }
+      }
+      blocks.add(new Block(size + HEADER_BYTES, points.size(), coverFrom, coverTo));
+      coverage.add(coverFrom, coverTo);
+      size += HEADER_BYTES + (long) points.size() * RECORD_BYTES;
+    }
+
+    // Map the file again once appends have grown it past the mapped part
+    private MappedByteBuffer map() throws IOException {
+      if (mapped == null || mapped.capacity() < size) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+          mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+      }
+      return mapped;
+    }
+  }
+}
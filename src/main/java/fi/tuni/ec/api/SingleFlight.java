@@ -0,0 +1,85 @@
+package fi.tuni.ec.api;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent calls for the same key into one.
+ * The first caller of a key runs the loader, callers arriving while it is in flight wait for
+ * the same result instead of starting their own. Once the call finishes the key is forgotten,
+ * so later calls run the loader again.
+ *
+ * @param <K> Type of the key
+ * @param <V> Type of the result
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Run the loader for a key, or wait for the call already in flight for it.
+   * If the caller running the loader is interrupted, waiting callers start over instead of
+   * failing with it.
+   *
+   * @param key Key identifying the call
+   * @param loader Loader producing the result
+   * @return Result of the loader, shared by all callers of the same call
+   * @throws Exception the exception thrown by the loader
+   */
+  public V run(K key, Callable<V> loader) throws Exception {
+    while (true) {
+      CompletableFuture<V> future = new CompletableFuture<>();
+      CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+      if (existing == null) {
+        return load(key, future, loader);
+      }
+
+      try {
+        return existing.get();
+      } catch (CancellationException e) {
+        // The leader was interrupted, try again and possibly become the leader
+        continue;
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception cause) {
+          throw cause;
+        }
+        throw e;
+      }
+    }
+  }
+
+  private V load(K key, CompletableFuture<V> future, Callable<V> loader) throws Exception {
+    try {
+      V value = loader.call();
+      future.complete(value);
+      return value;
+    } catch (InterruptedException e) {
+      future.cancel(false);
+      throw e;
+    } catch (Exception e) {
+      if (Thread.currentThread().isInterrupted()) {
+        future.cancel(false);
+      } else {
+        future.completeExceptionally(e);
+      }
+      throw e;
+    } catch (Error e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  /**
+   * Number of calls currently in flight.
+   *
+   * @return Number of keys being loaded
+   */
+  public int inFlightCount() {
+    return inFlight.size();
+  }
+}
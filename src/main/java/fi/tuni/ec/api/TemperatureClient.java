@@ -0,0 +1,520 @@
+package fi.tuni.ec.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Client for temperatures from Open-Meteo with a per-location, per-day cache.
+ * Daily means are counted in the location's timezone, hourly temperature_2m in UTC so that the
+ * hours line up with the epoch minutes of the price and load series.
+ * Missing days are fetched for every known location at once, Open-Meteo takes comma separated
+ * coordinate lists, so views of other countries and backfills are then served from the cache.
+ * Past days come from the archive API. The archive lags a few days behind, so recent days it
+ * has no value for and days from today on are taken from the forecast API. Past days are kept
+ * for good, days from today on expire after a short TTL since their forecast still changes.
+ */
+public class TemperatureClient {
+
+  private static final String ARCHIVE_URL = "https://archive-api.open-meteo.com/v1/archive";
+  private static final String FORECAST_URL = "https://api.open-meteo.com/v1/forecast";
+  // The forecast API serves at most this many past days and this many days ahead
+  private static final int FORECAST_PAST_DAYS = 92;
+  private static final int FORECAST_DAYS = 16;
+
+  /**
+   * Resolutions temperatures are fetched in, each day is cached as an array of its values.
+   */
+  private enum Resolution {
+    // Mean of the daily minimum and maximum
+    DAILY("daily=temperature_2m_min&daily=temperature_2m_max", 1),
+    // temperature_2m of every hour of a UTC day
+    HOURLY("hourly=temperature_2m", 24);
+
+    private final String query;
+    private final int valuesPerDay;
+
+    Resolution(String query, int valuesPerDay) {
+      this.query = query;
+      this.valuesPerDay = valuesPerDay;
+    }
+  }
+
+  private static TemperatureClient shared;
+
+  private final HttpTransport transport;
+  private final String archiveUrl;
+  private final String forecastUrl;
+  private final Set<Location> batch;
+  private final Duration liveTtl;
+  private final Clock clock;
+  // Resolution -> location -> day -> values of the day (NaN if missing), guarded by this
+  private final Map<Resolution, Map<Location, TreeMap<LocalDate, double[]>>> days =
+      new EnumMap<>(Resolution.class);
+  // Resolution -> location -> time its days from today on expire, guarded by this
+  private final Map<Resolution, Map<Location, Long>> liveExpiresAt =
+      new EnumMap<>(Resolution.class);
+  private long requests = 0;
+
+  /**
+   * Get the client shared by all services, batching the capitals of every supported country.
+   *
+   * @return The shared client
+   */
+  public static synchronized TemperatureClient getShared() {
+    if (shared == null) {
+      shared = new TemperatureClient(
+          HttpTransport.getShared(), countryLocations(), Duration.ofMinutes(15), Clock.systemUTC());
+    }
+    return shared;
+  }
+
+  /**
+   * Create a client.
+   *
+   * @param transport Transport used for the requests
+   * @param batch Locations fetched together whenever any of them misses days
+   * @param liveTtl Time to live for days from today on
+   * @param clock Clock used for expiry and deciding which days are in the past
+   */
+  public TemperatureClient(
+      HttpTransport transport,
+      Collection<Location> batch,
+      Duration liveTtl,
+      Clock clock) {
+    this(transport, batch, liveTtl, clock, ARCHIVE_URL, FORECAST_URL);
+  }
+
+  TemperatureClient(
+      HttpTransport transport,
+      Collection<Location> batch,
+      Duration liveTtl,
+      Clock clock,
+      String archiveUrl,
+      String forecastUrl) {
+    this.transport = transport;
+    this.archiveUrl = archiveUrl;
+    this.forecastUrl = forecastUrl;
+    this.batch = new LinkedHashSet<>(batch);
+    this.liveTtl = liveTtl;
+    this.clock = clock;
+    for (Resolution resolution : Resolution.values()) {
+      days.put(resolution, new HashMap<>());
+      liveExpiresAt.put(resolution, new HashMap<>());
+    }
+  }
+
+  /**
+   * Locations of the supported countries.
+   *
+   * @return Location of the capital of every country with coordinates
+   */
+  public static List<Location> countryLocations() {
+    List<Location> locations = new ArrayList<>();
+    ApiService.COUNTRY_COORDINATES.forEach((country, coordinates) -> locations.add(new Location(
+        coordinates.getKey(), coordinates.getValue(), ApiService.COUNTRY_TIMEZONES.get(country))));
+    return locations;
+  }
+
+  /**
+   * Get the daily mean temperatures of a location.
+   *
+   * @param location The location
+   * @param from First day
+   * @param to Last day
+   * @return Map of dates (yyyy-MM-dd) to mean temperatures, days without data are left out
+   * @throws IOException if fetching fails
+   */
+  public Map<String, Double> fetch(Location location, LocalDate from, LocalDate to)
+      throws IOException {
+    return fetchAll(List.of(location), from, to).get(location);
+  }
+
+  /**
+   * Get the daily mean temperatures of several locations with at most one archive and one
+   * forecast request.
+   *
+   * @param locations The locations
+   * @param from First day
+   * @param to Last day
+   * @return Temperatures of each location as a map of dates (yyyy-MM-dd) to mean temperatures
+   * @throws IOException if fetching fails
+   */
+  public Map<Location, Map<String, Double>> fetchAll(
+      Collection<Location> locations,
+      LocalDate from,
+      LocalDate to) throws IOException {
+    Map<Location, TreeMap<LocalDate, double[]>> fetched =
+        fetchDays(Resolution.DAILY, locations, from, to);
+
+    Map<Location, Map<String, Double>> result = new LinkedHashMap<>();
+    for (Location location : locations) {
+      Map<String, Double> temperatures = new LinkedHashMap<>();
+      fetched.get(location).forEach((date, values) -> {
+        if (!Double.isNaN(values[0])) {
+          temperatures.put(date.toString(), values[0]);
+        }
+      });
+      result.put(location, temperatures);
+    }
+    return result;
+  }
+
+  /**
+   * Get the hourly temperatures of a location for whole UTC days.
+   *
+   * @param location The location, its timezone is not used
+   * @param from First day (UTC)
+   * @param to Last day (UTC)
+   * @return One value per hour from the start of the first day, NaN where missing
+   * @throws IOException if fetching fails
+   */
+  public HourlyTemperature fetchHourly(Location location, LocalDate from, LocalDate to)
+      throws IOException {
+    Location utc = location.inUtc();
+    TreeMap<LocalDate, double[]> fetched =
+        fetchDays(Resolution.HOURLY, List.of(utc), from, to).get(utc);
+
+    HourlyTemperature hourly = new HourlyTemperature(
+        from.toEpochDay() * 1440, (int) (to.toEpochDay() - from.toEpochDay() + 1) * 24);
+    fetched.forEach((date, values) -> System.arraycopy(values, 0, hourly.getValues(),
+        (int) (date.toEpochDay() - from.toEpochDay()) * 24, values.length));
+    return hourly;
+  }
+
+  /**
+   * Number of requests sent so far.
+   *
+   * @return Request count
+   */
+  public synchronized long getRequests() {
+    return requests;
+  }
+
+  /**
+   * Remove all cached days.
+   */
+  public synchronized void clear() {
+    days.values().forEach(Map::clear);
+    liveExpiresAt.values().forEach(Map::clear);
+  }
+
+  private Map<Location, TreeMap<LocalDate, double[]>> fetchDays(
+      Resolution resolution,
+      Collection<Location> locations,
+      LocalDate from,
+      LocalDate to) throws IOException {
+    if (locations.stream().anyMatch(location -> !isCached(resolution, location, from, to))) {
+      // Everything known is fetched along, it costs the same request
+      Set<Location> wanted = new LinkedHashSet<>(locations);
+      for (Location location : batch) {
+        wanted.add(resolution == Resolution.HOURLY ? location.inUtc() : location);
+      }
+      List<Location> missing = wanted.stream()
+          .filter(location -> !isCached(resolution, location, from, to))
+          .collect(Collectors.toList());
+      load(resolution, missing, from, to);
+    }
+
+    Map<Location, TreeMap<LocalDate, double[]>> result = new LinkedHashMap<>();
+    for (Location location : locations) {
+      result.put(location, read(resolution, location, from, to));
+    }
+    return result;
+  }
+
+  private synchronized boolean isCached(
+      Resolution resolution,
+      Location location,
+      LocalDate from,
+      LocalDate to) {
+    TreeMap<LocalDate, double[]> cached = days.get(resolution).get(location);
+    if (cached == null) {
+      return false;
+    }
+    LocalDate today = today(location);
+    boolean liveValid =
+        liveExpiresAt.get(resolution).getOrDefault(location, 0L) > clock.millis();
+    LocalDate lastForecast = today.plusDays(FORECAST_DAYS - 1);
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      if (date.isBefore(today) ? !isComplete(cached.get(date))
+          : !liveValid && !date.isAfter(lastForecast)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private synchronized TreeMap<LocalDate, double[]> read(
+      Resolution resolution,
+      Location location,
+      LocalDate from,
+      LocalDate to) {
+    TreeMap<LocalDate, double[]> cached =
+        days.get(resolution).getOrDefault(location, new TreeMap<>());
+    return new TreeMap<>(cached.subMap(from, true, to, true));
+  }
+
+  private synchronized void store(
+      Resolution resolution,
+      Location location,
+      Map<LocalDate, double[]> temperatures,
+      boolean live) {
+    days.get(resolution).computeIfAbsent(location, l -> new TreeMap<>()).putAll(temperatures);
+    if (live) {
+      liveExpiresAt.get(resolution).put(location, clock.millis() + liveTtl.toMillis());
+    }
+  }
+
+  // A past day is cached once it has every value
+  private static boolean isComplete(double[] values) {
+    if (values == null) {
+      return false;
+    }
+    for (double value : values) {
+      if (Double.isNaN(value)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Fetch a range for the given locations: the past from the archive, then whatever the
+   * archive had no value for and the days from today on from the forecast.
+   */
+  private void load(
+      Resolution resolution,
+      List<Location> locations,
+      LocalDate from,
+      LocalDate to) throws IOException {
+    // Locations may be in different timezones, use the earliest today of them
+    LocalDate today = locations.stream().map(this::today).min(LocalDate::compareTo).orElseThrow();
+    List<Map<LocalDate, double[]>> fetched = new ArrayList<>();
+    for (int i = 0; i < locations.size(); i++) {
+      fetched.add(new TreeMap<>());
+    }
+
+    LocalDate archiveTo = to.isBefore(today) ? to : today.minusDays(1);
+    if (!from.isAfter(archiveTo)) {
+      List<Map<LocalDate, double[]>> archive =
+          request(archiveUrl, resolution, locations, from, archiveTo);
+      for (int i = 0; i < locations.size(); i++) {
+        fetched.get(i).putAll(archive.get(i));
+      }
+    }
+
+    // Recent days still missing from the archive and days from today on
+    LocalDate forecastFrom = today;
+    for (LocalDate date = archiveTo; !date.isBefore(from); date = date.minusDays(1)) {
+      LocalDate day = date;
+      if (fetched.stream().allMatch(temperatures -> isComplete(temperatures.get(day)))) {
+        break;
+      }
+      forecastFrom = day;
+    }
+    LocalDate earliest = today.minusDays(FORECAST_PAST_DAYS);
+    forecastFrom = forecastFrom.isBefore(earliest) ? earliest : forecastFrom;
+    LocalDate lastForecast = today.plusDays(FORECAST_DAYS - 1);
+    LocalDate forecastTo = to.isAfter(lastForecast) ? lastForecast : to;
+    boolean live = !to.isBefore(today);
+    if (!forecastFrom.isAfter(forecastTo)) {
+      List<Map<LocalDate, double[]>> forecast =
+          request(forecastUrl, resolution, locations, forecastFrom, forecastTo);
+      for (int i = 0; i < locations.size(); i++) {
+        // Archive values are final, the forecast only fills in the missing ones
+        Map<LocalDate, double[]> temperatures = fetched.get(i);
+        forecast.get(i).forEach((date, values) -> {
+          double[] archived = temperatures.putIfAbsent(date, values);
+          for (int v = 0; archived != null && v < archived.length; v++) {
+            if (Double.isNaN(archived[v])) {
+              archived[v] = values[v];
+            }
+          }
+        });
+      }
+    }
+
+    for (int i = 0; i < locations.size(); i++) {
+      store(resolution, locations.get(i), fetched.get(i), live);
+    }
+  }
+
+  private List<Map<LocalDate, double[]>> request(
+      String baseUrl,
+      Resolution resolution,
+      List<Location> locations,
+      LocalDate from,
+      LocalDate to) throws IOException {
+    String url = baseUrl
+        + "?latitude=" + join(locations, location -> String.valueOf(location.latitude))
+        + "&longitude=" + join(locations, location -> String.valueOf(location.longitude))
+        + "&timezone=" + join(locations, location -> location.timezone)
+        + "&start_date=" + from + "&end_date=" + to
+        + "&" + resolution.query;
+    synchronized (this) {
+      requests++;
+    }
+
+    JsonElement response;
+    try (InputStreamReader reader = new InputStreamReader(
+        transport.get(url), StandardCharsets.UTF_8)) {
+      response = JsonParser.parseReader(reader);
+    } catch (IOException e) {
+      throw new IOException("Failed to fetch data from URL: " + url + "| " + e.getMessage(), e);
+    }
+
+    // A single location is answered with an object, several with a list in request order
+    List<JsonObject> results = new ArrayList<>();
+    if (response.isJsonArray()) {
+      response.getAsJsonArray().forEach(element -> results.add(element.getAsJsonObject()));
+    } else if (response.isJsonObject()) {
+      results.add(response.getAsJsonObject());
+    }
+    if (results.size() != locations.size()) {
+      throw new IOException("Unexpected JSON format: " + response);
+    }
+
+    List<Map<LocalDate, double[]>> temperatures = new ArrayList<>();
+    for (JsonObject result : results) {
+      temperatures.add(resolution == Resolution.DAILY
+          ? parseDaily(result.getAsJsonObject("daily"))
+          : parseHourly(result.getAsJsonObject("hourly")));
+    }
+    return temperatures;
+  }
+
+  /**
+   * Parse daily minimum and maximum temperatures into daily means.
+   * Days without a value (null, e.g. not yet in the archive) are left out.
+   *
+   * @param daily The daily object of a response
+   * @return Map of days to their mean temperature as a single value
+   */
+  static Map<LocalDate, double[]> parseDaily(JsonObject daily) {
+    Map<LocalDate, double[]> temperatures = new TreeMap<>();
+    if (daily == null) {
+      return temperatures;
+    }
+    JsonArray dates = daily.getAsJsonArray("time");
+    JsonArray minTemps = daily.getAsJsonArray("temperature_2m_min");
+    JsonArray maxTemps = daily.getAsJsonArray("temperature_2m_max");
+    for (int i = 0; i < dates.size(); i++) {
+      if (minTemps.get(i).isJsonNull() || maxTemps.get(i).isJsonNull()) {
+        continue;
+      }
+      double meanTemp = (minTemps.get(i).getAsDouble() + maxTemps.get(i).getAsDouble()) / 2;
+      temperatures.put(LocalDate.parse(dates.get(i).getAsString()), new double[] {meanTemp});
+    }
+    return temperatures;
+  }
+
+  /**
+   * Parse hourly temperatures of a response requested in UTC into 24 values per day.
+   * Hours without a value are NaN, days without any value are left out.
+   *
+   * @param hourly The hourly object of a response
+   * @return Map of days to their hourly temperatures
+   */
+  static Map<LocalDate, double[]> parseHourly(JsonObject hourly) {
+    Map<LocalDate, double[]> temperatures = new TreeMap<>();
+    if (hourly == null) {
+      return temperatures;
+    }
+    JsonArray times = hourly.getAsJsonArray("time");
+    JsonArray values = hourly.getAsJsonArray("temperature_2m");
+    for (int i = 0; i < times.size(); i++) {
+      if (values.get(i).isJsonNull()) {
+        continue;
+      }
+      LocalDateTime time = LocalDateTime.parse(times.get(i).getAsString());
+      double[] day = temperatures.computeIfAbsent(time.toLocalDate(), date -> {
+        double[] empty = new double[Resolution.HOURLY.valuesPerDay];
+        Arrays.fill(empty, Double.NaN);
+        return empty;
+      });
+      day[time.getHour()] = values.get(i).getAsDouble();
+    }
+    return temperatures;
+  }
+
+  private static String join(
+      List<Location> locations,
+      Function<Location, String> field) {
+    return locations.stream().map(field).collect(Collectors.joining(","));
+  }
+
+  private LocalDate today(Location location) {
+    return LocalDate.now(clock.withZone(ZoneId.of(location.timezone)));
+  }
+
+  /**
+   * A location temperatures are fetched for.
+   */
+  public static class Location {
+    private final double latitude;
+    private final double longitude;
+    private final String timezone;
+
+    /**
+     * Create a location.
+     *
+     * @param latitude The latitude
+     * @param longitude The longitude
+     * @param timezone The timezone days are counted in (e.g. Europe/Helsinki)
+     */
+    public Location(double latitude, double longitude, String timezone) {
+      this.latitude = latitude;
+      this.longitude = longitude;
+      this.timezone = timezone;
+    }
+
+    // Same place with days counted in UTC
+    private Location inUtc() {
+      return new Location(latitude, longitude, "GMT");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Location other)) {
+        return false;
+      }
+      return latitude == other.latitude
+          && longitude == other.longitude
+          && timezone.equals(other.timezone);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(latitude, longitude, timezone);
+    }
+
+    @Override
+    public String toString() {
+      return latitude + "," + longitude + " (" + timezone + ")";
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package fi.tuni.ec.api;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar time series of price, usage and temperature.
+ * Points are stored on a fixed grid starting at an epoch minute, with one primitive array per
+ * metric. Missing values are stored as NaN.
+ */
+public class TimeSeries {
+
+  private final long startMinute;
+  private final int stepMinutes;
+  private final double[] price;
+  private final double[] usage;
+  private final double[] temperature;
+
+  /**
+   * Create an empty series where every value is missing.
+   *
+   * @param startMinute Time of the first point in minutes since epoch (UTC)
+   * @param stepMinutes Minutes between points
+   * @param size Number of points
+   */
+  public TimeSeries(long startMinute, int stepMinutes, int size) {
+    if (stepMinutes <= 0) {
+      throw new IllegalArgumentException("Step must be positive: " + stepMinutes);
+    }
+    this.startMinute = startMinute;
+    this.stepMinutes = stepMinutes;
+    this.price = new double[size];
+    this.usage = new double[size];
+    this.temperature = new double[size];
+    Arrays.fill(price, Double.NaN);
+    Arrays.fill(usage, Double.NaN);
+    Arrays.fill(temperature, Double.NaN);
+  }
+
+  /**
+   * Create a series from a list of ApiData.
+   * The step is the smallest interval in the list, points are placed by their time.
+   *
+   * @param dataList List of ApiData
+   * @return TimeSeries holding the same values
+   */
+  public static TimeSeries fromApiData(List<ApiData> dataList) {
+    if (dataList.isEmpty()) {
+      return new TimeSeries(0, 60, 0);
+    }
+
+    long first = Long.MAX_VALUE;
+    long last = Long.MIN_VALUE;
+    int step = Integer.MAX_VALUE;
+    for (ApiData data : dataList) {
+      long minute = toEpochMinute(data.date);
+      first = Math.min(first, minute);
+      last = Math.max(last, minute);
+      if (data.interval != null && data.interval > 0) {
+        step = Math.min(step, data.interval);
+      }
+    }
+    if (step == Integer.MAX_VALUE) {
+      step = 60;
+    }
+
+    TimeSeries series = new TimeSeries(first, step, (int) ((last - first) / step) + 1);
+    for (ApiData data : dataList) {
+      int i = series.indexOf(toEpochMinute(data.date));
+      series.price[i] = data.price;
+      series.usage[i] = data.usage;
+      series.temperature[i] = data.temperatureMean == null ? Double.NaN : data.temperatureMean;
+    }
+    return series;
+  }
+
+  /**
+   * Convert the series to a list of ApiData, skipping points with neither price nor usage.
+   *
+   * @return List of ApiData
+   */
+  public List<ApiData> toApiData() {
+    List<ApiData> dataList = new ArrayList<>(size());
+    for (int i = 0; i < size(); i++) {
+      if (Double.isNaN(price[i]) && Double.isNaN(usage[i])) {
+        continue;
+      }
+      ApiData data = new ApiData();
+      data.price = price[i];
+      data.usage = usage[i];
+      data.temperatureMean = Double.isNaN(temperature[i]) ? null : temperature[i];
+      data.date = timeAt(i);
+      data.interval = stepMinutes;
+      dataList.add(data);
+    }
+    return dataList;
+  }
+
+  public int size() {
+    return price.length;
+  }
+
+  public long getStartMinute() {
+    return startMinute;
+  }
+
+  public int getStepMinutes() {
+    return stepMinutes;
+  }
+
+  /**
+   * Time of a point in minutes since epoch.
+   *
+   * @param i Index of the point
+   * @return Epoch minute of the point (UTC)
+   */
+  public long minuteAt(int i) {
+    return startMinute + (long) i * stepMinutes;
+  }
+
+  public LocalDateTime timeAt(int i) {
+    return LocalDateTime.ofEpochSecond(minuteAt(i) * 60, 0, ZoneOffset.UTC);
+  }
+
+  /**
+   * Index of the point containing the given time.
+   *
+   * @param epochMinute Time in minutes since epoch (UTC)
+   * @return Index of the point, may be outside the series
+   */
+  public int indexOf(long epochMinute) {
+    return (int) Math.floorDiv(epochMinute - startMinute, stepMinutes);
+  }
+
+  // Arrays are returned as is so aggregation loops can read them without copying
+  public double[] getPrice() {
+    return price;
+  }
+
+  public double[] getUsage() {
+    return usage;
+  }
+
+  public double[] getTemperature() {
+    return temperature;
+  }
+
+  /**
+   * Estimated heap use of the series in bytes.
+   *
+   * @return Size of the arrays and the object headers
+   */
+  public long estimatedBytes() {
+    return 3L * (16 + 8L * size()) + 40;
+  }
+
+  /**
+   * Convert a time to minutes since epoch.
+   *
+   * @param date Time in UTC
+   * @return Minutes since epoch
+   */
+  public static long toEpochMinute(LocalDateTime date) {
+    return date.toEpochSecond(ZoneOffset.UTC) / 60;
+  }
+}
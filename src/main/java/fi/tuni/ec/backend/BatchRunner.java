@@ -0,0 +1,336 @@
+package fi.tuni.ec.backend;
+
+import fi.tuni.ec.api.Aggregator;
+import fi.tuni.ec.api.ApiService;
+import fi.tuni.ec.api.RequestScheduler;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import javafx.util.Pair;
+
+/**
+ * Headless entry point that runs queries and exports their aggregates as CSV files.
+ * Queries are taken from the arguments or, if none are given, from the saved queries file.
+ * Each query is fetched through ApiService, so the caches and the request scheduler are the
+ * same as in the app, and no JavaFX toolkit is started. Meant to be run from cron, e.g.
+ * java -cp ECTrack.jar:... fi.tuni.ec.backend.BatchRunner --out /var/ectrack
+ */
+public class BatchRunner {
+
+  private static final String USAGE = "Usage: BatchRunner [--queries file] [--out directory]"
+      + " [--parallelism n] [--date yyyy-MM-dd] [country;yyyy-MM-dd;DAY|WEEK|MONTH|YEAR|YTD ...]";
+  private static final DateTimeFormatter startFormatter =
+      DateTimeFormatter.ofPattern("yyyyMMdd0000");
+  private static final DateTimeFormatter endFormatter =
+      DateTimeFormatter.ofPattern("yyyyMMdd2300");
+
+  /**
+   * Fetches the aggregates of a period, ApiService::fetchAggregates outside of tests.
+   */
+  @FunctionalInterface
+  public interface Fetcher {
+    Aggregator.Aggregates fetch(
+        String country,
+        String periodStart,
+        String periodEnd,
+        Aggregator buckets) throws Exception;
+  }
+
+  private final Fetcher fetcher;
+  private final Path outDirectory;
+  private final int parallelism;
+  private final LocalDate today;
+
+  /**
+   * Create a runner.
+   *
+   * @param fetcher Fetches the aggregates of a query
+   * @param outDirectory Directory the CSV files are written to
+   * @param parallelism Maximum number of queries fetched at once
+   * @param today Last day data is fetched for
+   */
+  public BatchRunner(Fetcher fetcher, Path outDirectory, int parallelism, LocalDate today) {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+    }
+    this.fetcher = fetcher;
+    this.outDirectory = outDirectory;
+    this.parallelism = parallelism;
+    this.today = today;
+  }
+
+  /**
+   * Run queries from the command line. Exits with 1 if any query failed and 2 on bad
+   * arguments or a missing queries file. Periods are cut at the given date, today by default.
+   *
+   * @param args Options and queries, see USAGE
+   */
+  public static void main(String[] args) {
+    String queryFile = "savedQueries.csv";
+    Path out = Path.of("export");
+    int parallelism = 4;
+    LocalDate date = LocalDate.now();
+    List<String> params = new ArrayList<>();
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "--queries" -> queryFile = args[++i];
+          case "--out" -> out = Path.of(args[++i]);
+          case "--parallelism" -> parallelism = Integer.parseInt(args[++i]);
+          case "--date" -> date = LocalDate.parse(args[++i]);
+          default -> params.add(args[i]);
+        }
+      }
+    } catch (RuntimeException e) {
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+
+    // QueryHandler creates a missing file, a wrong path would then run nothing and succeed
+    if (params.isEmpty() && !Files.isRegularFile(Path.of(queryFile))) {
+      System.err.println("Queries file not found: " + queryFile);
+      System.exit(2);
+    }
+
+    List<Query> queries = new ArrayList<>();
+    try {
+      if (params.isEmpty()) {
+        queries.addAll(loadQueries(new QueryHandler(queryFile), date));
+      }
+      for (String param : params) {
+        queries.add(Query.parse(param.replace(';', '_'), param, date));
+      }
+    } catch (RuntimeException e) {
+      System.err.println("Invalid query: " + e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+
+    ApiService apiService = new ApiService();
+    apiService.setPriority(RequestScheduler.Priority.BACKGROUND);
+    BatchRunner runner =
+        new BatchRunner(apiService::fetchAggregates, out, parallelism, date);
+    System.exit(runner.run(queries) == 0 ? 0 : 1);
+  }
+
+  /**
+   * Get the queries of a query file, sorted by name.
+   * Queries saved without a date are run for the given day.
+   *
+   * @param handler Handler of the saved queries
+   * @param date Day of queries saved without a date
+   * @return The queries
+   */
+  public static List<Query> loadQueries(QueryHandler handler, LocalDate date) {
+    Map<String, Pair<String, String>> saved = new TreeMap<>(handler.getQueries());
+    List<Query> queries = new ArrayList<>();
+    saved.forEach((name, query) -> queries.add(Query.parse(name, query.getValue(), date)));
+    return queries;
+  }
+
+  /**
+   * Fetch and export queries, at most parallelism of them at a time.
+   *
+   * @param queries Queries to run
+   * @return Number of queries that failed
+   */
+  public int run(List<Query> queries) {
+    try {
+      Files.createDirectories(outDirectory);
+    } catch (IOException e) {
+      System.err.println("Cannot create " + outDirectory + ": " + e.getMessage());
+      return queries.size();
+    }
+
+    // One virtual thread per query, the semaphore bounds how many are fetched at once
+    Semaphore permits = new Semaphore(parallelism);
+    List<Future<Path>> results = new ArrayList<>();
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (Query query : queries) {
+        results.add(executor.submit(() -> {
+          permits.acquire();
+          try {
+            return export(query);
+          } finally {
+            permits.release();
+          }
+        }));
+      }
+    }
+
+    int failed = 0;
+    for (int i = 0; i < queries.size(); i++) {
+      try {
+        System.out.println(queries.get(i).getName() + ": wrote " + results.get(i).get());
+      } catch (Exception e) {
+        Throwable cause = e.getCause() == null ? e : e.getCause();
+        System.err.println(queries.get(i).getName() + ": failed: " + cause.getMessage());
+        failed++;
+      }
+    }
+    return failed;
+  }
+
+  /**
+   * Fetch the aggregates of a query and write them to its CSV file.
+   *
+   * @param query Query to run
+   * @return Path of the written file
+   * @throws Exception if fetching or writing fails
+   */
+  Path export(Query query) throws Exception {
+    LocalDate to = query.getTo().isAfter(today) ? today : query.getTo();
+    if (to.isBefore(query.getFrom())) {
+      throw new IllegalArgumentException("Period starts after " + today);
+    }
+    Aggregator buckets = getBuckets(query.getType(), query.getFrom(), to);
+    Aggregator.Aggregates aggregates = fetcher.fetch(
+        query.getCountry(),
+        query.getFrom().format(startFormatter),
+        to.format(endFormatter),
+        buckets);
+
+    Path file = outDirectory.resolve(query.getName().replaceAll("[^\\w.-]", "_") + ".csv");
+    try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      writer.write("start,mean_price,min_price,max_price,usage,mean_temperature");
+      writer.newLine();
+      for (int i = 0; i < aggregates.size(); i++) {
+        if (!aggregates.hasData(i)) {
+          continue;
+        }
+        writer.write(LocalDateTime.ofEpochSecond(
+            aggregates.getStartMinute(i) * 60, 0, ZoneOffset.UTC) + "Z"
+            + "," + format(aggregates.getMeanPrice(i))
+            + "," + format(aggregates.getMinPrice(i))
+            + "," + format(aggregates.getMaxPrice(i))
+            + "," + format(aggregates.getUsage(i))
+            + "," + format(aggregates.getMeanTemperature(i)));
+        writer.newLine();
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Buckets of a period type: hours for days and weeks, days for months and months for years,
+   * as in the charts of the app.
+   */
+  static Aggregator getBuckets(String type, LocalDate from, LocalDate to) {
+    return switch (type) {
+      case "DAY", "WEEK" -> Aggregator.fixed(
+          from.toEpochDay() * 1440, 60, (int) (to.toEpochDay() - from.toEpochDay() + 1) * 24);
+      case "MONTH" -> Aggregator.days(from, to);
+      case "YEAR", "YTD" -> Aggregator.months(YearMonth.from(from), YearMonth.from(to));
+      default -> throw new IllegalArgumentException("Unknown period type: " + type);
+    };
+  }
+
+  // Missing values are left empty
+  private static String format(double value) {
+    return Double.isNaN(value) ? "" : String.valueOf(value);
+  }
+
+  /**
+   * A query to run: a country and the days of a period.
+   */
+  public static class Query {
+    private final String name;
+    private final String country;
+    private final String type;
+    private final LocalDate from;
+    private final LocalDate to;
+
+    /**
+     * Create a query.
+     *
+     * @param name Name of the query, used for the file name
+     * @param country The country
+     * @param type The period type (DAY, WEEK, MONTH, YEAR or YTD)
+     * @param date Date within the period
+     */
+    public Query(String name, String country, String type, LocalDate date) {
+      this.name = name;
+      this.country = country;
+      this.type = type;
+      switch (type) {
+        case "DAY" -> {
+          from = date;
+          to = date;
+        }
+        case "WEEK" -> {
+          from = date.with(DayOfWeek.MONDAY);
+          to = from.plusDays(6);
+        }
+        case "MONTH" -> {
+          from = date.withDayOfMonth(1);
+          to = date.withDayOfMonth(date.lengthOfMonth());
+        }
+        case "YEAR" -> {
+          from = date.withDayOfYear(1);
+          to = date.withDayOfYear(date.lengthOfYear());
+        }
+        case "YTD" -> {
+          from = date.withDayOfYear(1);
+          to = date;
+        }
+        default -> throw new IllegalArgumentException("Unknown period type: " + type);
+      }
+    }
+
+    /**
+     * Parse saved query parameters in format country;date;dateType.
+     * Parameters with only a country are run as the day of the given date.
+     *
+     * @param name Name of the query
+     * @param params The parameters
+     * @param date Day of parameters without a date
+     * @return The query
+     */
+    public static Query parse(String name, String params, LocalDate date) {
+      String[] spl = params.trim().split(";");
+      if (spl.length == 1) {
+        return new Query(name, spl[0], "DAY", date);
+      }
+      if (spl.length != 3) {
+        throw new IllegalArgumentException(params);
+      }
+      return new Query(name, spl[0], spl[2], LocalDate.parse(spl[1]));
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getCountry() {
+      return country;
+    }
+
+    public String getType() {
+      return type;
+    }
+
+    public LocalDate getFrom() {
+      return from;
+    }
+
+    public LocalDate getTo() {
+      return to;
+    }
+  }
+}
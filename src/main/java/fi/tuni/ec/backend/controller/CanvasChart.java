@@ -0,0 +1,394 @@
+package fi.tuni.ec.backend.controller;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+/**
+ * Chart drawing series directly onto a canvas.
+ * Unlike LineChart and BarChart no node is created per point. Each pixel column is drawn from
+ * the minimum and maximum of the points falling into it, so the cost of a frame depends on the
+ * width of the chart rather than the number of points. Supports zooming with the scroll wheel,
+ * panning by dragging, resetting the view with a double click and a hover readout.
+ */
+public final class CanvasChart extends Region {
+
+  private static final double LEFT = 60;
+  private static final double RIGHT = 20;
+  private static final double TOP = 30;
+  private static final double BOTTOM = 30;
+  private static final Color TEXT_COLOR = Color.WHITE;
+  private static final Color GRID_COLOR = Color.rgb(255, 255, 255, 0.15);
+  private static final Font FONT = Font.font(12);
+
+  private final Canvas canvas = new Canvas();
+  private final String title;
+  private List<Series> series = List.of();
+  private long startMinute;
+  private int stepMinutes = 60;
+  private int size;
+
+  // Visible range as point indices, fractional while zooming
+  private double viewFrom;
+  private double viewTo;
+  private double hoverX = -1;
+  private double dragX;
+
+  /**
+   * A series drawn on the chart.
+   */
+  public static class Series {
+    private final String name;
+    private final double[] values;
+    private final Color color;
+    private final boolean bars;
+
+    /**
+     * Create a series.
+     *
+     * @param name Name shown in the legend
+     * @param values Values on the chart's grid, NaN for missing
+     * @param color Color of the series
+     * @param bars true to draw bars from zero, false to draw a line
+     */
+    public Series(String name, double[] values, Color color, boolean bars) {
+      this.name = name;
+      this.values = values;
+      this.color = color;
+      this.bars = bars;
+    }
+  }
+
+  /**
+   * Create an empty chart.
+   *
+   * @param title Title drawn above the plot
+   */
+  public CanvasChart(String title) {
+    this.title = title;
+    getChildren().add(canvas);
+    setMinSize(0, 0);
+
+    setOnScroll(this::zoom);
+    setOnMousePressed(event -> dragX = event.getX());
+    setOnMouseDragged(this::pan);
+    setOnMouseMoved(event -> {
+      hoverX = event.getX();
+      draw();
+    });
+    setOnMouseExited(event -> {
+      hoverX = -1;
+      draw();
+    });
+    setOnMouseClicked(event -> {
+      if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2) {
+        resetView();
+      }
+    });
+  }
+
+  /**
+   * Replace the data of the chart and show all of it.
+   *
+   * @param startMinute Time of the first point in minutes since epoch (UTC)
+   * @param stepMinutes Minutes between points
+   * @param series Series on the grid, all of the same length
+   */
+  public void setData(long startMinute, int stepMinutes, List<Series> series) {
+    this.startMinute = startMinute;
+    this.stepMinutes = stepMinutes;
+    this.series = series;
+    this.size = series.isEmpty() ? 0 : series.getFirst().values.length;
+    resetView();
+  }
+
+  private void resetView() {
+    viewFrom = 0;
+    viewTo = Math.max(1, size - 1);
+    draw();
+  }
+
+  @Override
+  protected void layoutChildren() {
+    canvas.setWidth(getWidth());
+    canvas.setHeight(getHeight());
+    draw();
+  }
+
+  private double plotWidth() {
+    return Math.max(1, canvas.getWidth() - LEFT - RIGHT);
+  }
+
+  private double plotHeight() {
+    return Math.max(1, canvas.getHeight() - TOP - BOTTOM);
+  }
+
+  private double toX(double index) {
+    return LEFT + (index - viewFrom) / (viewTo - viewFrom) * plotWidth();
+  }
+
+  private double indexAt(double x) {
+    return viewFrom + (x - LEFT) / plotWidth() * (viewTo - viewFrom);
+  }
+
+  private void zoom(ScrollEvent event) {
+    if (size < 2 || event.getDeltaY() == 0) {
+      return;
+    }
+    double anchor = indexAt(event.getX());
+    double factor = event.getDeltaY() > 0 ? 0.8 : 1.25;
+    double span = Math.clamp((viewTo - viewFrom) * factor, Math.min(10, size - 1), size - 1);
+    double ratio = (anchor - viewFrom) / (viewTo - viewFrom);
+    setView(anchor - span * ratio, span);
+  }
+
+  private void pan(MouseEvent event) {
+    double span = viewTo - viewFrom;
+    double shift = (dragX - event.getX()) / plotWidth() * span;
+    dragX = event.getX();
+    setView(viewFrom + shift, span);
+  }
+
+  // Move the view keeping it within the data
+  private void setView(double from, double span) {
+    viewFrom = Math.clamp(from, 0, Math.max(0, size - 1 - span));
+    viewTo = viewFrom + span;
+    draw();
+  }
+
+  /**
+   * Redraw the whole chart.
+   */
+  private void draw() {
+    GraphicsContext gc = canvas.getGraphicsContext2D();
+    gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+    gc.setFont(FONT);
+    gc.setFill(TEXT_COLOR);
+    gc.fillText(title, LEFT, TOP - 12);
+    if (size == 0 || canvas.getWidth() <= LEFT + RIGHT) {
+      return;
+    }
+
+    int from = Math.max(0, (int) Math.floor(viewFrom));
+    int to = Math.min(size - 1, (int) Math.ceil(viewTo));
+    double[] range = valueRange(from, to);
+    double min = range[0];
+    double max = range[1];
+
+    drawGrid(gc, min, max);
+    // Points just outside the view are drawn too, clip them to the plot
+    gc.save();
+    gc.beginPath();
+    gc.rect(LEFT, TOP, plotWidth(), plotHeight());
+    gc.clip();
+    for (Series s : series) {
+      if (s.bars) {
+        drawBars(gc, s, from, to, min, max);
+      } else {
+        drawLine(gc, s, from, to, min, max);
+      }
+    }
+    gc.restore();
+    drawLegend(gc);
+    drawHover(gc);
+  }
+
+  // Range of the visible values with some padding, including zero when bars are drawn
+  private double[] valueRange(int from, int to) {
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (Series s : series) {
+      if (s.bars) {
+        min = Math.min(min, 0);
+        max = Math.max(max, 0);
+      }
+      for (int i = from; i <= to; i++) {
+        double value = s.values[i];
+        if (!Double.isNaN(value)) {
+          min = Math.min(min, value);
+          max = Math.max(max, value);
+        }
+      }
+    }
+    if (min > max) {
+      return new double[] {0, 1};
+    }
+    double padding = max > min ? (max - min) * 0.05 : 1;
+    return new double[] {min - padding, max + padding};
+  }
+
+  private double toY(double value, double min, double max) {
+    return TOP + (max - value) / (max - min) * plotHeight();
+  }
+
+  private void drawGrid(GraphicsContext gc, double min, double max) {
+    gc.setLineWidth(1);
+    for (int tick = 0; tick <= 4; tick++) {
+      double value = min + (max - min) * tick / 4;
+      double y = toY(value, min, max);
+      gc.setStroke(GRID_COLOR);
+      gc.strokeLine(LEFT, y, LEFT + plotWidth(), y);
+      gc.setFill(TEXT_COLOR);
+      gc.fillText(String.format("%.1f", value), 4, y + 4);
+    }
+
+    DateTimeFormatter formatter = labelFormatter();
+    for (int tick = 0; tick <= 5; tick++) {
+      double index = viewFrom + (viewTo - viewFrom) * tick / 5;
+      double x = toX(index);
+      gc.setStroke(GRID_COLOR);
+      gc.strokeLine(x, TOP, x, TOP + plotHeight());
+      gc.setFill(TEXT_COLOR);
+      gc.fillText(formatter.format(timeAt(index)), x - 20, canvas.getHeight() - 10);
+    }
+  }
+
+  // Coarser labels for wider views
+  private DateTimeFormatter labelFormatter() {
+    double days = (viewTo - viewFrom) * stepMinutes / 1440.0;
+    if (days > 120) {
+      return DateTimeFormatter.ofPattern("MMM yyyy");
+    } else if (days > 2) {
+      return DateTimeFormatter.ofPattern("dd.MM");
+    }
+    return DateTimeFormatter.ofPattern("dd.MM HH:mm");
+  }
+
+  private LocalDateTime timeAt(double index) {
+    long minute = startMinute + Math.round(index * stepMinutes);
+    return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+  }
+
+  /**
+   * Draw a line through the first, minimum, maximum and last value of each pixel column.
+   * This keeps spikes visible however many points fall into a column.
+   */
+  private void drawLine(GraphicsContext gc, Series s, int from, int to, double min, double max) {
+    gc.setStroke(s.color);
+    gc.setLineWidth(1.5);
+    gc.beginPath();
+    boolean drawing = false;
+    int column = Integer.MIN_VALUE;
+    double first = 0;
+    double last = 0;
+    double low = 0;
+    double high = 0;
+
+    for (int i = from; i <= to + 1; i++) {
+      int x = i <= to ? (int) toX(i) : Integer.MAX_VALUE;
+      double value = i <= to ? s.values[i] : Double.NaN;
+      if (x != column || Double.isNaN(value)) {
+        // Flush the finished column
+        if (column != Integer.MIN_VALUE) {
+          if (!drawing) {
+            gc.moveTo(column, toY(first, min, max));
+            drawing = true;
+          }
+          gc.lineTo(column, toY(first, min, max));
+          gc.lineTo(column, toY(low, min, max));
+          gc.lineTo(column, toY(high, min, max));
+          gc.lineTo(column, toY(last, min, max));
+          column = Integer.MIN_VALUE;
+        }
+        if (Double.isNaN(value)) {
+          // Gaps break the line
+          drawing = false;
+          gc.stroke();
+          gc.beginPath();
+          continue;
+        }
+        column = x;
+        first = value;
+        low = value;
+        high = value;
+      }
+      low = Math.min(low, value);
+      high = Math.max(high, value);
+      last = value;
+    }
+    gc.stroke();
+  }
+
+  /**
+   * Draw one bar per pixel column up to the column's maximum, or one bar per point when the
+   * points are wider than a pixel.
+   */
+  private void drawBars(GraphicsContext gc, Series s, int from, int to, double min, double max) {
+    gc.setFill(s.color);
+    double pointWidth = plotWidth() / Math.max(1, viewTo - viewFrom);
+    double barWidth = Math.max(1, pointWidth * 0.8);
+    double zero = toY(0, min, max);
+    int column = Integer.MIN_VALUE;
+    double high = Double.NaN;
+
+    for (int i = from; i <= to + 1; i++) {
+      int x = i <= to ? (int) (toX(i) - barWidth / 2) : Integer.MAX_VALUE;
+      if (x != column) {
+        if (!Double.isNaN(high)) {
+          double y = toY(high, min, max);
+          gc.fillRect(column, Math.min(y, zero), barWidth, Math.abs(zero - y));
+        }
+        column = x;
+        high = Double.NaN;
+      }
+      if (i <= to && !Double.isNaN(s.values[i])) {
+        high = Double.isNaN(high) ? s.values[i] : Math.max(high, s.values[i]);
+      }
+    }
+  }
+
+  private void drawLegend(GraphicsContext gc) {
+    double x = canvas.getWidth() - RIGHT;
+    for (int i = series.size() - 1; i >= 0; i--) {
+      Series s = series.get(i);
+      x -= 10 + s.name.length() * 7;
+      gc.setFill(s.color);
+      gc.fillRect(x, TOP - 22, 10, 10);
+      gc.setFill(TEXT_COLOR);
+      gc.fillText(s.name, x + 14, TOP - 12);
+      x -= 14;
+    }
+  }
+
+  // Vertical marker and the values of the point under the mouse
+  private void drawHover(GraphicsContext gc) {
+    if (hoverX < LEFT || hoverX > LEFT + plotWidth()) {
+      return;
+    }
+    int index = (int) Math.round(indexAt(hoverX));
+    if (index < 0 || index >= size) {
+      return;
+    }
+    double x = toX(index);
+    gc.setStroke(TEXT_COLOR);
+    gc.setLineWidth(1);
+    gc.strokeLine(x, TOP, x, TOP + plotHeight());
+
+    String[] lines = new String[series.size() + 1];
+    lines[0] = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm").format(timeAt(index));
+    for (int i = 0; i < series.size(); i++) {
+      double value = series.get(i).values[index];
+      lines[i + 1] = series.get(i).name + ": "
+          + (Double.isNaN(value) ? "-" : String.format("%.2f", value));
+    }
+
+    double boxWidth = 190;
+    double boxHeight = 16 * lines.length + 8;
+    double boxX = x + boxWidth + 10 > canvas.getWidth() ? x - boxWidth - 10 : x + 10;
+    gc.setFill(Color.rgb(0, 0, 0, 0.7));
+    gc.fillRect(boxX, TOP, boxWidth, boxHeight);
+    gc.setFill(TEXT_COLOR);
+    for (int i = 0; i < lines.length; i++) {
+      gc.fillText(lines[i], boxX + 6, TOP + 18 + 16 * i);
+    }
+  }
+}
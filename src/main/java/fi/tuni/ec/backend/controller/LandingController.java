@@ -1,26 +1,40 @@
 package fi.tuni.ec.backend.controller;
 
+import fi.tuni.ec.api.Aggregator;
 import fi.tuni.ec.api.ApiData;
 import fi.tuni.ec.api.ApiService;
+import fi.tuni.ec.api.Downsampler;
+import fi.tuni.ec.api.Prefetcher;
+import fi.tuni.ec.api.RequestScheduler;
+import fi.tuni.ec.api.ResponseCache;
+import fi.tuni.ec.api.RollupStore;
+import fi.tuni.ec.api.TimeSeries;
 import fi.tuni.ec.backend.QueryHandler;
 import java.io.IOException;
+import java.time.DateTimeException;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.Month;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.time.format.TextStyle;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.chart.BarChart;
 import javafx.scene.chart.CategoryAxis;
@@ -30,11 +44,14 @@ import javafx.scene.chart.XYChart;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TextInputDialog;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 
 
@@ -53,14 +70,33 @@ public class LandingController {
   private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd.MM.yyyy");
   private final DateTimeFormatter monthFormatter = DateTimeFormatter.ofPattern("MMMM");
   private final DateTimeFormatter yearFormatter = DateTimeFormatter.ofPattern("yyyy");
-
-  private NumberAxis lineY = new NumberAxis();
-  private CategoryAxis lineX = new CategoryAxis();
-  private LineChart<String, Number> lineChart = new LineChart<>(lineX, lineY);
-  private NumberAxis barY = new NumberAxis();
-  private CategoryAxis barX = new CategoryAxis();
-  private BarChart<String, Number> barChart = new BarChart<>(barX, barY);
+  private final DateTimeFormatter hourFormatter = DateTimeFormatter.ofPattern("H:mm");
+
+  // Charts and series are created once and reused for every view
+  private final NumberAxis lineY = new NumberAxis();
+  private final CategoryAxis lineX = new CategoryAxis();
+  private final LineChart<String, Number> lineChart = new LineChart<>(lineX, lineY);
+  private final NumberAxis barY = new NumberAxis();
+  private final CategoryAxis barX = new CategoryAxis();
+  private final BarChart<String, Number> barChart = new BarChart<>(barX, barY);
+  private final XYChart.Series<String, Number> priceSeries = new XYChart.Series<>();
+  private final XYChart.Series<String, Number> tempSeries = new XYChart.Series<>();
+  private final XYChart.Series<String, Number> usageSeries = new XYChart.Series<>();
+  // Full resolution charts, drawn on a canvas instead of one node per point
+  private final CanvasChart priceCanvas =
+      new CanvasChart("Electricity Prices and Average Temperature");
+  private final CanvasChart usageCanvas = new CanvasChart("Electricity Usage");
   private final ApiService apiService = new ApiService();
+  private final RollupStore rollups = RollupStore.getShared();
+  // Loads the periods next to the shown one and the saved queries with a background priority
+  private final ApiService prefetchService = new ApiService();
+  private final Prefetcher prefetcher =
+      new Prefetcher(this::prefetchPeriod, ResponseCache.getShared(), 6);
+
+  // Worker threads for fetching and aggregating data off the FX thread
+  private static final ExecutorService loadExecutor = Executors.newVirtualThreadPerTaskExecutor();
+  private final ProgressIndicator loadingIndicator = new ProgressIndicator();
+  private Task<?> currentLoad;
 
   private final Alert invalidDateAlert = new Alert(
       Alert.AlertType.ERROR,
@@ -81,6 +117,8 @@ public class LandingController {
   @FXML Button prevDateButton;
   @FXML Button nextDateButton;
   @FXML ComboBox<String> countryCb;
+  @FXML CheckBox fullResolutionCb;
+  @FXML ComboBox<Downsampler.Mode> detailCb;
   @FXML private StackPane graphPlaceholder;
   @FXML private StackPane graphPlaceholder2;
 
@@ -94,31 +132,31 @@ public class LandingController {
     dateLabel.setText(dateFormatter.format(dispDate));
     ds = DateState.DAY;
     queryHandler = new QueryHandler();
+    prefetchService.setPriority(RequestScheduler.Priority.BACKGROUND);
 
     countryCb.getItems().addAll(fi.tuni.ec.api.ApiService.COUNTRY_CODES.keySet());
     countryCb.getSelectionModel().selectFirst();
 
+    if (detailCb != null) {
+      detailCb.getItems().setAll(Downsampler.Mode.values());
+      detailCb.getSelectionModel().select(Downsampler.Mode.LTTB);
+      detailCb.setOnAction(event -> updateGraph());
+    }
+
     // Update graph when country is changed
     countryCb.getSelectionModel().selectedItemProperty().addListener(
         (observable, oldValue, newValue) -> {
           if (newValue != null && !newValue.equals(oldValue)) {
-          clearCharts();
+          showCharts();
           updateGraph();
         }
       }
     );
 
-    // Take these from selected dates
-    var periodStart = dispDate.format(DateTimeFormatter.ofPattern("yyyyMMdd0000"));
-    var periodEnd = dispDate.format(DateTimeFormatter.ofPattern("yyyyMMdd2300"));
-
-    var priceData = fetchAndFormData(countryCb.getValue(), periodStart, periodEnd);
-
-    if (priceData != null) {
-      createGraph(priceData);
-    } else {
-      new Alert(Alert.AlertType.ERROR, "Error fetching data", ButtonType.OK);
-    }
+    // Load today's data in the background so the window is usable right away
+    setupCharts();
+    showCharts();
+    updateGraph();
   }
 
   /**
@@ -259,77 +297,64 @@ public class LandingController {
    * @param offSet Determines if date moves forward or backward
    */
   private void setDispDate(int offSet) {
-    LocalDate newDate;
+    LocalDate newDate = shiftDate(ds, dispDate, offSet);
+    if (newDate.isAfter(curDate)) {
+      invalidDateAlert.showAndWait();
+    } else {
+      dispDate = newDate;
+    }
     switch (ds) {
-      case DAY:
-        newDate = dispDate.plusDays(offSet);
-        if (newDate.isAfter(curDate)) {
-          invalidDateAlert.showAndWait();
-        } else {
-          dispDate = newDate;
-        }
-        showDate();
-        break;
-      case WEEK:
-        newDate = dispDate.plusWeeks(offSet);
-        if (newDate.isAfter(curDate)) {
-          invalidDateAlert.showAndWait();
-        } else {
-          dispDate = newDate;
-        }
-        showWeek();
-        break;
-      case MONTH:
-        newDate = dispDate.plusMonths(offSet);
-        if (newDate.isAfter(curDate)) {
-          invalidDateAlert.showAndWait();
-        } else {
-          dispDate = newDate;
-        }
-        showMonth();
-        break;
-      case YEAR:
-        newDate = dispDate.plusYears(offSet);
-        if (newDate.isAfter(curDate)) {
-          invalidDateAlert.showAndWait();
-        } else {
-          dispDate = newDate;
-        }
-        showYear();
-        break;
-      case YTD:
-        newDate = dispDate.plusYears(offSet);
-        if (newDate.isAfter(curDate)) {
-          invalidDateAlert.showAndWait();
-        } else {
-          dispDate = newDate;
-        }
-        showYtd();
-        break;
-      default:
-        break;
+      case DAY -> showDate();
+      case WEEK -> showWeek();
+      case MONTH -> showMonth();
+      case YEAR -> showYear();
+      case YTD -> showYtd();
+      default -> {
+      }
     }
   }
 
-  private void createGraph(List<ApiData> priceData) {
-    clearCharts();
-
-    updateDayGraph(priceData);
+  /**
+   * Move a date by whole time periods.
+   *
+   * @param state The time period type
+   * @param date Date to move
+   * @param offSet Number of periods to move, negative moves backward
+   * @return The moved date
+   */
+  private static LocalDate shiftDate(DateState state, LocalDate date, int offSet) {
+    return switch (state) {
+      case DAY -> date.plusDays(offSet);
+      case WEEK -> date.plusWeeks(offSet);
+      case MONTH -> date.plusMonths(offSet);
+      case YEAR, YTD -> date.plusYears(offSet);
+    };
   }
 
-  // Clear charts for clean update
-  private void clearCharts() {
-    graphPlaceholder.getChildren().clear();
-    graphPlaceholder2.getChildren().clear();
-
-    lineY = new NumberAxis();
-    lineX = new CategoryAxis();
-    barY = new NumberAxis();
-    barX = new CategoryAxis();
-
-    lineChart = new LineChart<>(lineX, lineY);
-    barChart = new BarChart<>(barX, barY);
+  /**
+   * Get the days of the time period containing a date.
+   *
+   * @param country The country
+   * @param state The time period type
+   * @param date Date within the period
+   * @return The period from its first to its last day
+   */
+  private Prefetcher.Period getPeriod(String country, DateState state, LocalDate date) {
+    return switch (state) {
+      case DAY -> new Prefetcher.Period(country, date, date);
+      case WEEK -> new Prefetcher.Period(country, getWeek(date).get(0), getWeek(date).get(6));
+      case MONTH -> new Prefetcher.Period(
+          country, date.withDayOfMonth(1), date.withDayOfMonth(date.lengthOfMonth()));
+      case YEAR -> new Prefetcher.Period(
+          country, date.withDayOfYear(1), date.withDayOfYear(date.lengthOfYear()));
+      case YTD -> new Prefetcher.Period(country, date.withDayOfYear(1), date);
+    };
+  }
 
+  /**
+   * Configure the charts and their series. Called once, the charts are reused afterwards.
+   */
+  private void setupCharts() {
     lineY.setLabel("€ / Kw & °C");
     lineChart.setTitle("Electricity Prices and Average Temperature");
 
@@ -337,18 +362,21 @@ public class LandingController {
     barChart.setTitle("Electricity Usage");
     barChart.setCategoryGap(3);
 
-    lineChart.getStylesheets().add(
-        Objects.requireNonNull(getClass().getResource("landing.css")).toExternalForm());
-    barChart.getStylesheets().add(
-        Objects.requireNonNull(getClass().getResource("landing.css")).toExternalForm());
+    // Whole series are replaced at once, animating every point only slows the update down
+    lineChart.setAnimated(false);
+    barChart.setAnimated(false);
+    lineX.setAnimated(false);
+    lineY.setAnimated(false);
+    barX.setAnimated(false);
+    barY.setAnimated(false);
 
-    XYChart.Series<String, Number> priceSeries = new XYChart.Series<>();
-    priceSeries.setName("Electricity Prices");
+    String stylesheet =
+        Objects.requireNonNull(getClass().getResource("landing.css")).toExternalForm();
+    lineChart.getStylesheets().add(stylesheet);
+    barChart.getStylesheets().add(stylesheet);
 
-    XYChart.Series<String, Number> tempSeries = new XYChart.Series<>();
+    priceSeries.setName("Electricity Prices");
     tempSeries.setName("Temperature Mean");
-
-    XYChart.Series<String, Number> usageSeries = new XYChart.Series<>();
     usageSeries.setName("Electricity Usage");
 
     lineChart.getData().add(priceSeries);
@@ -357,9 +385,31 @@ public class LandingController {
 
     lineChart.setLegendVisible(true);
     barChart.setLegendVisible(false);
+  }
+
+  // Put the charts of the selected renderer in place, e.g. after an error message replaced them
+  private void showCharts() {
+    Node top = isFullResolution() ? priceCanvas : lineChart;
+    Node bottom = isFullResolution() ? usageCanvas : barChart;
+    if (!graphPlaceholder.getChildren().contains(top)) {
+      graphPlaceholder.getChildren().setAll(top);
+    }
+    if (!graphPlaceholder2.getChildren().contains(bottom)) {
+      graphPlaceholder2.getChildren().setAll(bottom);
+    }
+  }
 
-    graphPlaceholder.getChildren().add(lineChart);
-    graphPlaceholder2.getChildren().add(barChart);
+  private boolean isFullResolution() {
+    return fullResolutionCb != null && fullResolutionCb.isSelected();
+  }
+
+  /**
+   * Switch between the aggregated charts and the full resolution canvas charts.
+   */
+  @FXML
+  public void toggleRenderer() {
+    showCharts();
+    updateGraph();
   }
 
   /**
@@ -445,7 +495,7 @@ public class LandingController {
     ds = DateState.DAY;
     nextDateButton.setVisible(true);
     prevDateButton.setVisible(true);
-    clearCharts();
+    showCharts();
     updateGraph();
   }
 
@@ -458,7 +508,7 @@ public class LandingController {
     ds = DateState.WEEK;
     nextDateButton.setVisible(true);
     prevDateButton.setVisible(true);
-    clearCharts();
+    showCharts();
     updateGraph();
   }
 
@@ -471,7 +521,7 @@ public class LandingController {
     ds = DateState.MONTH;
     nextDateButton.setVisible(true);
     prevDateButton.setVisible(true);
-    clearCharts();
+    showCharts();
     updateGraph();
   }
 
@@ -484,7 +534,7 @@ public class LandingController {
     ds = DateState.YEAR;
     nextDateButton.setVisible(true);
     prevDateButton.setVisible(true);
-    clearCharts();
+    showCharts();
     updateGraph();
   }
 
@@ -497,271 +547,450 @@ public class LandingController {
     ds = DateState.YTD;
     nextDateButton.setVisible(false);
     prevDateButton.setVisible(false);
-    clearCharts();
+    showCharts();
     updateGraph();
   }
 
-  // Copied from MainController for now
-  private List<ApiData> fetchAndFormData(String country, String periodStart, String periodEnd) {
-    try {
-      var fetchedData = apiService.fetchData(country, periodStart, periodEnd);
-
-      if (fetchedData.isEmpty()) {
-        throw new IOException();
-      }
+  /**
+   * Fetch data and drop points outside the period. Runs on a worker thread.
+   *
+   * @param country The country to fetch
+   * @param periodStart Start of the period (format: yyyyMMddHHmm)
+   * @param periodEnd End of the period (format: yyyyMMddHHmm)
+   * @return Data within the period
+   * @throws Exception if fetching fails or no data is available
+   */
+  private List<ApiData> fetchAndFormData(String country, String periodStart, String periodEnd)
+      throws Exception {
+    return fetchAndFormData(apiService, country, periodStart, periodEnd);
+  }
 
-      // Ensure data fetched from api is really between the chosen period
-      // since api has returned data couple hours off from requested
-      var formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmm");
-      var startTime = LocalDateTime.parse(periodStart, formatter);
-      var endTime = LocalDateTime.parse(periodEnd, formatter);
+  private static List<ApiData> fetchAndFormData(
+      ApiService service,
+      String country,
+      String periodStart,
+      String periodEnd) throws Exception {
+    var fetchedData = service.fetchData(country, periodStart, periodEnd);
 
-      return fetchedData.stream()
-          .filter(data -> !data.date.isBefore(startTime) && !data.date.isAfter(endTime))
-          .collect(Collectors.toList());
-    } catch (IOException e) {
-      System.out.println("Error fetching data: " + e.getMessage());
-      showErrorMessage("No data available for selected period or country");
-      return null;
-    } catch (Exception e) {
-      throw new RuntimeException(e);
+    if (fetchedData.isEmpty()) {
+      throw new IOException("No data for " + country + " " + periodStart + " - " + periodEnd);
     }
+
+    // Ensure data fetched from api is really between the chosen period
+    // since api has returned data couple hours off from requested
+    var formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmm");
+    var startTime = LocalDateTime.parse(periodStart, formatter);
+    var endTime = LocalDateTime.parse(periodEnd, formatter);
+
+    return fetchedData.stream()
+        .filter(data -> !data.date.isBefore(startTime) && !data.date.isAfter(endTime))
+        .collect(Collectors.toList());
   }
 
+  /**
+   * Load and show data for the selected country and period.
+   * Fetching, parsing and aggregation run on a worker thread and the result is drawn on the
+   * FX thread. A new call cancels the previous load, so only the latest navigation is shown.
+   */
   private void updateGraph() {
     String country = countryCb.getValue();
+    DateState state = ds;
+    LocalDate date = dispDate;
     String periodStart;
     String periodEnd;
-    List<ApiData> priceData = new ArrayList<>();
 
-    switch (ds) {
+    // Prefetches for other periods are no longer useful, one for this period is joined
+    prefetcher.cancelExcept(getPeriod(country, state, date));
+
+    switch (state) {
       case DAY -> {
-        periodStart = dispDate.format(
+        periodStart = date.format(
             DateTimeFormatter.ofPattern("yyyyMMdd0000"));
-        periodEnd = dispDate.format(
+        periodEnd = date.format(
             DateTimeFormatter.ofPattern("yyyyMMdd2300"));
       }
       case WEEK -> {
-        List<LocalDate> week = getWeek(dispDate);
+        List<LocalDate> week = getWeek(date);
         periodStart = week.get(0).format(
             DateTimeFormatter.ofPattern("yyyyMMdd0000"));
         periodEnd = week.get(6).format(
             DateTimeFormatter.ofPattern("yyyyMMdd2300"));
       }
       case MONTH -> {
-        periodStart = dispDate.withDayOfMonth(1).format(
+        periodStart = date.withDayOfMonth(1).format(
             DateTimeFormatter.ofPattern("yyyyMMdd0000"));
-        periodEnd = dispDate.withDayOfMonth(dispDate.lengthOfMonth()).format(
+        periodEnd = date.withDayOfMonth(date.lengthOfMonth()).format(
             DateTimeFormatter.ofPattern("yyyyMMdd2300")
         );
       }
       case YEAR -> {
-        periodStart = dispDate.withDayOfYear(1).format(
+        periodStart = date.withDayOfYear(1).format(
             DateTimeFormatter.ofPattern("yyyyMMdd0000"));
-        periodEnd = dispDate.withDayOfYear(dispDate.lengthOfYear()).format(
+        periodEnd = date.withDayOfYear(date.lengthOfYear()).format(
             DateTimeFormatter.ofPattern("yyyyMMdd2300")
         );
       }
       case YTD -> {
-        periodStart = dispDate.withDayOfYear(1).format(
+        periodStart = date.withDayOfYear(1).format(
             DateTimeFormatter.ofPattern("yyyyMMdd0000"));
-        periodEnd = dispDate.format(
+        periodEnd = date.format(
             DateTimeFormatter.ofPattern("yyyyMMdd2300"));
       }
-      default -> throw new IllegalStateException("Unexpected value: " + ds);
+      default -> throw new IllegalStateException("Unexpected value: " + state);
     }
 
-    // For year and ytd, split range into 3 month sequences
-    if (ds == DateState.YEAR || ds == DateState.YTD) {
-      List<String[]> periods = splitYearlyRange(periodStart, periodEnd);
-      for (String[] period : periods) {
-        periodStart = period[0];
-        periodEnd = period[1];
-        List<ApiData> chunkData = fetchAndFormData(country, periodStart, periodEnd);
-        if (chunkData != null) {
-          priceData.addAll(chunkData);
-        }
-      }
-    } else {
-      priceData = fetchAndFormData(country, periodStart, periodEnd);
+    String periodType = switch (state) {
+      case DAY -> "hour";
+      case WEEK -> "day";
+      case MONTH -> "dayOfMonth";
+      case YEAR, YTD -> "month";
+    };
+
+    if (isFullResolution()) {
+      updateCanvasGraph(country, periodStart, periodEnd);
+      return;
+    }
+    if (state == DateState.YEAR || state == DateState.YTD) {
+      updateYearGraph(country, date, periodEnd);
+      return;
     }
 
-    if (priceData != null) {
-      switch (ds) {
-        case DAY -> updateDayGraph(priceData);
-        case WEEK -> updateWeekGraph(priceData);
-        case MONTH -> updateMonthGraph(priceData);
-        case YEAR, YTD -> updateYearGraph(priceData);
-        default -> {
-          showErrorMessage("Invalid date state");
-        }
+    Task<List<ApiData>> task = new Task<>() {
+      @Override
+      protected List<ApiData> call() throws Exception {
+        return switch (state) {
+          case DAY -> fetchAndFormData(country, periodStart, periodEnd);
+          case WEEK -> loadDays(country, getWeek(date).get(0), getWeek(date).get(6));
+          case MONTH -> loadDays(country, date.withDayOfMonth(1),
+              date.withDayOfMonth(date.lengthOfMonth()));
+          case YEAR, YTD -> throw new IllegalStateException("Years are loaded by month");
+        };
       }
-    } else {
-      new Alert(
-          Alert.AlertType.ERROR, "Error fetching data", ButtonType.OK);
-      showErrorMessage("No data available for selected period or country");
-    }
+    };
+
+    startLoad(task, data -> updateGraphData(
+        downsample(data),
+        priceSeries,
+        tempSeries,
+        usageSeries,
+        periodType));
   }
 
-  // Split year range into 3 months to avoid huge data fetches.
-
   /**
-   * Split year into 3 months to avoid API limit.
+   * Load the period without aggregation and show it on the canvas charts.
    *
-   * @param periodStart Start of the period
-   * @param periodEnd End of the period
-   * @return list of individual periods
+   * @param country The country to fetch
+   * @param periodStart Start of the period (format: yyyyMMddHHmm)
+   * @param periodEnd End of the period (format: yyyyMMddHHmm)
    */
-  public static List<String[]> splitYearlyRange(String periodStart, String periodEnd) {
-    List<String[]> periods = new ArrayList<>();
-    var dateFormatter = DateTimeFormatter.ofPattern("yyyyMMdd");
-
-    var start = LocalDate.parse(periodStart.substring(0, 8), dateFormatter);
-    var end = LocalDate.parse(periodEnd.substring(0, 8), dateFormatter);
-
-    while (start.isBefore(end)) {
-      var tempEnd = start.plusMonths(3).minusDays(1);
-
-      if (tempEnd.isAfter(end)) {
-        tempEnd = end;
+  private void updateCanvasGraph(String country, String periodStart, String periodEnd) {
+    Task<TimeSeries> task = new Task<>() {
+      @Override
+      protected TimeSeries call() throws Exception {
+        TimeSeries series = apiService.fetchSeries(country, periodStart, periodEnd);
+        if (series.size() == 0) {
+          throw new IOException("No data for " + country + " " + periodStart + " - " + periodEnd);
+        }
+        return series;
       }
+    };
+
+    startLoad(task, series -> {
+      priceCanvas.setData(series.getStartMinute(), series.getStepMinutes(), List.of(
+          new CanvasChart.Series("Electricity Prices", series.getPrice(), Color.BLUE, false),
+          new CanvasChart.Series("Temperature Mean", series.getTemperature(), Color.RED, false)));
+      usageCanvas.setData(series.getStartMinute(), series.getStepMinutes(), List.of(
+          new CanvasChart.Series(
+              "Electricity Usage", series.getUsage(), Color.web("#f3622d"), true)));
+    });
+  }
 
-      periods.add(
-          new String[]{
-              start.format(dateFormatter) + "0000",
-              tempEnd.format(dateFormatter) + "2300"
-          });
-
-      start = tempEnd.plusDays(1);
+  /**
+   * Load a year or YTD view month by month.
+   * Each month is fetched as its own chunk and the chart is redrawn as soon as a month
+   * arrives, so the first months show up without waiting for the whole year. Months that fail
+   * are marked on the chart instead of failing the whole view.
+   *
+   * @param country The country to fetch
+   * @param date Date within the year
+   * @param periodEnd End of the period (format: yyyyMMddHHmm)
+   */
+  private void updateYearGraph(String country, LocalDate date, String periodEnd) {
+    var endDate = LocalDate.parse(
+        periodEnd.substring(0, 8), DateTimeFormatter.ofPattern("yyyyMMdd"));
+    List<YearMonth> months = new ArrayList<>();
+    for (int m = 1; m <= 12; m++) {
+      months.add(YearMonth.of(date.getYear(), m));
     }
-    return periods;
-  }
-
-  private void updateDayGraph(List<ApiData> priceData) {
-    updateGraphData(
-        priceData,
-        lineChart.getData().get(0),
-        lineChart.getData().get(1),
-        barChart.getData().getFirst(),
-        "hour");
-  }
-
-  private void updateWeekGraph(List<ApiData> priceData) {
-    Map<LocalDate, List<ApiData>> groupByDate = priceData.stream()
-        .collect(Collectors.groupingBy(data -> data.date.toLocalDate()));
-
-    List<ApiData> dailyAverages = new ArrayList<>(getWeek(dispDate).stream()
-        .map(weekDate -> {
-          var dailyData = groupByDate.getOrDefault(weekDate, Collections.emptyList());
-
-          var temp = new ApiData();
-
-          temp.date = weekDate.atStartOfDay();
-          temp.interval = 1440;
-
-          // If dates have no data or are in the future, replace with zero data. Otherwise, get avg
-          if (!dailyData.isEmpty()) {
-            temp.price = dailyData.stream()
-                .mapToDouble(data -> data.price)
-                .average()
-                .orElse(0.0);
-            temp.temperatureMean = dailyData.stream()
-                .mapToDouble(data -> data.temperatureMean)
-                .average()
-                .orElse(0.0);
-            temp.usage = dailyData.stream()
-                .mapToDouble(data -> data.usage)
-                .sum();
-          } else {
-            temp.price = 0.0;
-            temp.temperatureMean = 0.0;
-            temp.usage = 0.0;
-          }
 
-          return temp;
-        }).toList());
-
-    dailyAverages.sort(Comparator.comparing(apiData -> apiData.date));
+    Task<List<ApiData>> task = new Task<>() {
+      @Override
+      protected List<ApiData> call() throws Exception {
+        // Months after the end of the period are shown without values, the rest are loaded
+        ApiData[] results = new ApiData[months.size()];
+        ExecutorCompletionService<Integer> completionService =
+            new ExecutorCompletionService<>(loadExecutor);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < months.size(); i++) {
+          YearMonth month = months.get(i);
+          if (month.atDay(1).isAfter(endDate)) {
+            results[i] = new RollupStore.Rollup().toApiData(
+                month.atDay(1).atStartOfDay(), 1440 * month.lengthOfMonth());
+            continue;
+          }
+          futures.add(completionService.submit(loadMonth(country, month, endDate, results, i)));
+        }
 
-    updateGraphData(
-        dailyAverages,
-        lineChart.getData().get(0),
-        lineChart.getData().get(1),
-        barChart.getData().getFirst(),
-        "day");
+        int failures = 0;
+        try {
+          for (int done = 0; done < futures.size(); done++) {
+            int index = completionService.take().get();
+            if (isFailed(results[index])) {
+              failures++;
+            }
+            List<ApiData> snapshot = loadedMonths(results);
+            Platform.runLater(() -> {
+              if (this == currentLoad) {
+                showLoading(false);
+                updateGraphData(
+                    snapshot,
+                    priceSeries,
+                    tempSeries,
+                    usageSeries,
+                    "month");
+              }
+            });
+          }
+        } catch (ExecutionException e) {
+          throw new IOException(e.getCause());
+        } finally {
+          futures.forEach(future -> future.cancel(true));
+        }
 
+        if (failures == futures.size()) {
+          throw new IOException("No data available for " + country + " " + date.getYear());
+        }
+        return loadedMonths(results);
+      }
+    };
+
+    startLoad(task, data -> updateGraphData(
+        downsample(data),
+        priceSeries,
+        tempSeries,
+        usageSeries,
+        "month"));
   }
 
-  private void updateMonthGraph(List<ApiData> priceData) {
-    Map<Integer, List<ApiData>> groupByDay = priceData.stream()
-        .collect(Collectors.groupingBy(data -> data.date.getDayOfMonth()));
-
-    List<ApiData> dailyAverages = new ArrayList<>();
-
-    for (int day = 1; day <= dispDate.lengthOfMonth(); day++) {
-      List<ApiData> dailyData = groupByDay.getOrDefault(day, new ArrayList<>());
-
-      var temp = new ApiData();
-
-      temp.date = LocalDateTime.of(dispDate.getYear(), dispDate.getMonth(), day, 0, 0);
-      temp.interval = 1440;
-
-      // If dates have no data or are in the future, replace with zero data. Otherwise, get avg
-      setNullToZero(dailyData, temp);
+  /**
+   * Create a task loading a single month of a year view.
+   * A failed month is stored as a point without values instead of throwing.
+   *
+   * @return Task returning the index it stored its result in
+   */
+  private Callable<Integer> loadMonth(
+      String country,
+      YearMonth month,
+      LocalDate endDate,
+      ApiData[] results,
+      int index) {
+    return () -> {
+      LocalDate monthEnd = month.atEndOfMonth().isAfter(endDate) ? endDate : month.atEndOfMonth();
+      String periodStart = month.atDay(1).format(DateTimeFormatter.ofPattern("yyyyMMdd0000"));
+      // Up to midnight after the last day so that every day of the month can be complete
+      String periodEnd =
+          monthEnd.plusDays(1).format(DateTimeFormatter.ofPattern("yyyyMMdd0000"));
+      ApiData result;
+      try {
+        // Complete months are read from the rollups, others are fetched and rolled up
+        RollupStore.Rollup rollup = rollups.getMonth(country, month);
+        if (rollup == null) {
+          // Aggregated while parsing, the points of the month are never held in a list
+          Aggregator.Aggregates daily = apiService.fetchAggregates(
+              country, periodStart, periodEnd, Aggregator.days(month.atDay(1), monthEnd));
+          if (!hasData(daily)) {
+            throw new IOException("No data for " + country + " " + month);
+          }
+          rollups.ingest(country, daily);
+          rollup = rollups.summarize(country, month.atDay(1), monthEnd);
+        }
+        result = rollup.toApiData(month.atDay(1).atStartOfDay(), 1440 * month.lengthOfMonth());
+      } catch (InterruptedException e) {
+        throw e;
+      } catch (Exception e) {
+        System.out.println("Error fetching " + month + ": " + e.getMessage());
+        result = new ApiData();
+        result.date = month.atDay(1).atStartOfDay();
+        result.price = Double.NaN;
+        result.usage = Double.NaN;
+      }
+      synchronized (results) {
+        results[index] = result;
+      }
+      return index;
+    };
+  }
 
-      dailyAverages.add(temp);
+  /**
+   * Months loaded so far, in calendar order.
+   */
+  private static List<ApiData> loadedMonths(ApiData[] results) {
+    List<ApiData> loaded = new ArrayList<>();
+    synchronized (results) {
+      for (ApiData result : results) {
+        if (result != null) {
+          loaded.add(result);
+        }
+      }
     }
+    return loaded;
+  }
 
-    dailyAverages.sort(Comparator.comparing(apiData -> apiData.date));
+  private static boolean hasData(Aggregator.Aggregates aggregates) {
+    for (int i = 0; i < aggregates.size(); i++) {
+      if (aggregates.hasData(i)) {
+        return true;
+      }
+    }
+    return false;
+  }
 
-    updateGraphData(
-        dailyAverages,
-        lineChart.getData().get(0),
-        lineChart.getData().get(1),
-        barChart.getData().getFirst(),
-        "dayOfMonth");
+  private static boolean isFailed(ApiData data) {
+    return Double.isNaN(data.price) && Double.isNaN(data.usage) && data.temperatureMean == null;
   }
 
-  private void setNullToZero(List<ApiData> dailyData, ApiData temp) {
-    if (!dailyData.isEmpty()) {
-      temp.price = dailyData.stream().mapToDouble(data -> data.price).average().orElse(0);
-      temp.temperatureMean = dailyData.stream().mapToDouble(data -> data.temperatureMean).average().orElse(0);
-      temp.usage = dailyData.stream().mapToDouble(data -> data.usage).sum();
-    } else {
-      temp.price = 0.0;
-      temp.temperatureMean = 0.0;
-      temp.usage = 0;
+  /**
+   * Run a load task on the worker executor, replacing any load still in progress.
+   * The loading indicator is shown until the task finishes.
+   *
+   * @param task Task producing the data
+   * @param onLoaded Called on the FX thread with the data if the task is still the latest
+   */
+  private <T> void startLoad(Task<T> task, Consumer<T> onLoaded) {
+    if (currentLoad != null) {
+      currentLoad.cancel(true);
     }
+    currentLoad = task;
+    showLoading(true);
+
+    task.setOnSucceeded(event -> {
+      if (task == currentLoad) {
+        showLoading(false);
+        onLoaded.accept(task.getValue());
+        prefetchAround();
+      }
+    });
+    task.setOnFailed(event -> {
+      if (task == currentLoad) {
+        showLoading(false);
+        System.out.println("Error fetching data: " + task.getException().getMessage());
+        showErrorMessage("No data available for selected period or country");
+      }
+    });
+    loadExecutor.execute(task);
   }
 
-  private void updateYearGraph(List<ApiData> priceData) {
-    Map<Month, List<ApiData>> groupedByMonth = priceData.stream()
-        .collect(Collectors.groupingBy(data -> data.date.getMonth()));
-
-    List<ApiData> monthlyAverages = new ArrayList<>(Arrays.stream(Month.values())
-        .map(month -> {
-          List<ApiData> monthlyData = groupedByMonth.getOrDefault(month, new ArrayList<>());
+  /**
+   * Prefetch the periods the user is likely to open next: the previous and next period of the
+   * shown view, then the periods of saved queries.
+   */
+  private void prefetchAround() {
+    String country = countryCb.getValue();
+    List<Prefetcher.Period> periods = new ArrayList<>();
+    if (ds != DateState.YTD) {
+      periods.add(getPeriod(country, ds, shiftDate(ds, dispDate, -1)));
+      LocalDate next = shiftDate(ds, dispDate, 1);
+      if (!next.isAfter(curDate)) {
+        periods.add(getPeriod(country, ds, next));
+      }
+    }
 
-          var temp = new ApiData();
-          temp.date = LocalDateTime.of(dispDate.getYear(), month, 1, 0, 0);
+    // Saved query parameters are in format country;date;dateType
+    for (var query : queryHandler.getQueries().values()) {
+      String[] params = query.getValue().split(";");
+      if (params.length < 3) {
+        continue;
+      }
+      try {
+        periods.add(getPeriod(
+            params[0], DateState.valueOf(params[2]), LocalDate.parse(params[1])));
+      } catch (IllegalArgumentException | DateTimeException e) {
+        System.out.println("Skipping prefetch of saved query: " + query.getValue());
+      }
+    }
+    prefetcher.prefetch(periods);
+  }
 
-          // If dates have no data or are in the future, replace with zero data
-          setNullToZero(monthlyData, temp);
+  /**
+   * Load a period into the series store and the rollups. Runs on the prefetch thread.
+   *
+   * @param period Period to load
+   * @throws Exception if fetching fails
+   */
+  private void prefetchPeriod(Prefetcher.Period period) throws Exception {
+    LocalDate to = period.getTo().isAfter(curDate) ? curDate : period.getTo();
+    if (rollups.hasDays(period.getCountry(), period.getFrom(), to)) {
+      return;
+    }
+    ingestDays(prefetchService, period.getCountry(), period.getFrom(), to);
+  }
 
-          temp.interval = 1440 * month.length(dispDate.isLeapYear());
-          return temp;
-        }).toList());
+  /**
+   * Fetch whole days and roll them up. The period ends at midnight after the last day so its
+   * final hour is fetched and the day can be complete.
+   */
+  private void ingestDays(ApiService service, String country, LocalDate from, LocalDate to)
+      throws Exception {
+    List<ApiData> data = fetchAndFormData(
+        service,
+        country,
+        from.format(DateTimeFormatter.ofPattern("yyyyMMdd0000")),
+        to.plusDays(1).format(DateTimeFormatter.ofPattern("yyyyMMdd0000")));
+    // Points of the next day are left out so they do not replace its rollup
+    rollups.ingest(country, Aggregator.days(from, to).aggregateParallel(data));
+  }
 
-    // Sort to ensure that graph displays data correctly
-    monthlyAverages.sort(Comparator.comparing(apiData -> apiData.date));
+  /**
+   * Show or hide the loading indicator on top of the charts.
+   *
+   * @param loading true while data is being loaded
+   */
+  private void showLoading(boolean loading) {
+    graphPlaceholder.getChildren().remove(loadingIndicator);
+    if (loading) {
+      graphPlaceholder.getChildren().add(loadingIndicator);
+    }
+  }
 
-    updateGraphData(
-        monthlyAverages,
-        lineChart.getData().get(0),
-        lineChart.getData().get(1),
-        barChart.getData().getFirst(),
-        "month");
+  /**
+   * Load one point per day for a range of days.
+   * Days are read from the rollups when all of them are complete, otherwise the range is
+   * fetched and rolled up first. Runs on a worker thread.
+   *
+   * @param country The country to load
+   * @param from First day of the range
+   * @param to Last day of the range
+   * @return Daily points, values missing from a day are NaN
+   * @throws Exception if fetching fails or no data is available
+   */
+  private List<ApiData> loadDays(String country, LocalDate from, LocalDate to) throws Exception {
+    if (!rollups.hasDays(country, from, to)) {
+      ingestDays(apiService, country, from, to);
+    }
+    return rollups.getDaily(country, from, to);
+  }
 
+  /**
+   * Reduce data to at most one point per pixel of the chart with the selected detail mode.
+   *
+   * @param data Data sorted by time
+   * @return Data to draw
+   */
+  private List<ApiData> downsample(List<ApiData> data) {
+    Downsampler.Mode mode = detailCb == null ? Downsampler.Mode.LTTB : detailCb.getValue();
+    // Before the first layout the chart has no width yet
+    int width = (int) lineChart.getWidth();
+    return Downsampler.downsample(data, width > 0 ? width : 1000, mode);
   }
 
   private void updateGraphData(List<ApiData> priceData,
@@ -770,29 +999,70 @@ public class LandingController {
                                XYChart.Series<String, Number> usageSeries,
                                String periodType) {
 
-    priceSeries.getData().clear();
-    tempSeries.getData().clear();
-    usageSeries.getData().clear();
+    // Points are collected first and each series is updated with a single change
+    List<XYChart.Data<String, Number>> prices = new ArrayList<>();
+    List<XYChart.Data<String, Number>> temps = new ArrayList<>();
+    List<XYChart.Data<String, Number>> usages = new ArrayList<>();
 
     for (var data : priceData) {
-      if (data.date.getMinute() != 0) {
-        continue; // Only get hourly data to be consistent with indexes
-      }
-      String dataString;
-      switch (periodType) {
-        case "hour" -> dataString = data.date.getHour() + ":00" + getTemperatureString(data.temperatureMean);
-        case "day" -> dataString = data.date.getDayOfWeek().getDisplayName(
-            TextStyle.SHORT, Locale.ENGLISH
-        ) + getTemperatureString(data.temperatureMean);
-        case "dayOfMonth" -> dataString = String.valueOf(data.date.getDayOfMonth()) + getTemperatureString(data.temperatureMean);
-        case "month" -> dataString = data.date.getMonth().getDisplayName(
-            TextStyle.SHORT, Locale.ENGLISH
-        ) + getTemperatureString(data.temperatureMean);
+      String dataString = switch (periodType) {
+        case "hour" -> hourFormatter.format(data.date);
+        case "day" -> data.date.getDayOfWeek().getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
+        case "dayOfMonth" -> String.valueOf(data.date.getDayOfMonth());
+        case "month" -> data.date.getMonth().getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
         default -> throw new IllegalArgumentException("Period type unexpected: " + periodType);
+      };
+
+      // A point without any values marks a period that failed to load
+      if (isFailed(data)) {
+        usages.add(new XYChart.Data<>(dataString + "\nerror", 0));
+        continue;
+      }
+      if (data.temperatureMean != null) {
+        dataString += getTemperatureString(data.temperatureMean);
+      }
+
+      // Leave out points where a document had no value for this time
+      if (!Double.isNaN(data.price)) {
+        prices.add(new XYChart.Data<>(dataString, data.price));
+      }
+      if (data.temperatureMean != null) {
+        temps.add(new XYChart.Data<>(dataString, data.temperatureMean));
+      }
+      if (!Double.isNaN(data.usage)) {
+        usages.add(new XYChart.Data<>(dataString, data.usage));
+      }
+    }
+
+    replaceData(priceSeries, prices);
+    replaceData(tempSeries, temps);
+    replaceData(usageSeries, usages);
+  }
+
+  /**
+   * Replace the points of a series. If the categories are unchanged only the values are
+   * updated, so the existing nodes are kept. Otherwise all points are replaced at once.
+   *
+   * @param series Series to update
+   * @param points New points of the series
+   */
+  private static void replaceData(
+      XYChart.Series<String, Number> series,
+      List<XYChart.Data<String, Number>> points) {
+    var current = series.getData();
+    boolean sameCategories = current.size() == points.size();
+    for (int i = 0; sameCategories && i < points.size(); i++) {
+      sameCategories = current.get(i).getXValue().equals(points.get(i).getXValue());
+    }
+
+    if (!sameCategories) {
+      current.setAll(points);
+      return;
+    }
+    for (int i = 0; i < points.size(); i++) {
+      if (!current.get(i).getYValue().equals(points.get(i).getYValue())) {
+        current.get(i).setYValue(points.get(i).getYValue());
       }
-      priceSeries.getData().add(new XYChart.Data<>(dataString, data.price));
-      tempSeries.getData().add(new XYChart.Data<>(dataString, data.temperatureMean));
-      usageSeries.getData().add(new XYChart.Data<>(dataString, data.usage));
     }
   }
 
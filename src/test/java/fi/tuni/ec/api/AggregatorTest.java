@@ -0,0 +1,193 @@
+package fi.tuni.ec.api;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing Aggregator.
+ */
+public class AggregatorTest extends TestCase {
+
+  private static List<ApiData> hourly(LocalDateTime start, int hours) {
+    List<ApiData> dataList = new ArrayList<>();
+    for (int i = 0; i < hours; i++) {
+      ApiData data = new ApiData();
+      data.date = start.plusHours(i);
+      data.interval = 60;
+      data.price = i % 24;
+      data.usage = 1;
+      data.temperatureMean = i % 2 == 0 ? 1.0 : null;
+      dataList.add(data);
+    }
+    return dataList;
+  }
+
+  /**
+   * Tests that daily buckets aggregate every metric and skip missing values.
+   */
+  public void testDays() {
+    List<ApiData> dataList = hourly(LocalDateTime.of(2024, 1, 1, 0, 0), 48);
+    dataList.get(0).price = Double.NaN;
+    Aggregator.Aggregates aggregates = Aggregator.days(
+        LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 3)).aggregate(dataList);
+
+    // Assert: First day leaves out the missing price, third day is empty
+    assertEquals(3, aggregates.size());
+    assertEquals(12.0, aggregates.getMeanPrice(0), 1e-9);
+    assertEquals(1.0, aggregates.getMinPrice(0), 1e-9);
+    assertEquals(23.0, aggregates.getMaxPrice(1), 1e-9);
+    assertEquals(24.0, aggregates.getUsage(1), 1e-9);
+    assertEquals(1.0, aggregates.getMeanTemperature(1), 1e-9);
+    assertFalse(aggregates.hasData(2));
+    assertTrue(Double.isNaN(aggregates.getMeanPrice(2)));
+  }
+
+  /**
+   * Tests that points missing both price and usage are skipped by both aggregation paths.
+   */
+  public void testEmptyPointsSkipped() {
+    List<ApiData> dataList = hourly(LocalDateTime.of(2024, 1, 1, 0, 0), 24);
+    for (ApiData data : dataList.subList(12, 24)) {
+      data.price = Double.NaN;
+      data.usage = Double.NaN;
+    }
+    Aggregator buckets = Aggregator.days(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 1));
+    Aggregator.Aggregates fromList = buckets.aggregate(dataList);
+    Aggregator.Aggregates fromSeries = buckets.aggregate(
+        SeriesMerger.merge(dataList, dataList, SeriesMerger.LoadResampling.SUM));
+
+    // Assert: Only the first twelve hours are covered, the same for a list and a series
+    assertEquals(12 * 60L, fromList.coveredMinutes[0]);
+    assertEquals(fromSeries.coveredMinutes[0], fromList.coveredMinutes[0]);
+  }
+
+  /**
+   * Tests that calendar months of different lengths get the right points.
+   */
+  public void testMonths() {
+    List<ApiData> dataList = hourly(LocalDateTime.of(2024, 1, 1, 0, 0), 24 * 60);
+    Aggregator aggregator = Aggregator.months(YearMonth.of(2024, 1), YearMonth.of(2024, 3));
+    Aggregator.Aggregates aggregates = aggregator.aggregate(dataList);
+
+    // Assert: January has 31 days, February 29 and nothing reaches March
+    assertEquals(31 * 24.0, aggregates.getUsage(0), 1e-9);
+    assertEquals(29 * 24.0, aggregates.getUsage(1), 1e-9);
+    assertFalse(aggregates.hasData(2));
+    assertEquals(-1, aggregator.bucketOf(TimeSeries.toEpochMinute(
+        LocalDateTime.of(2024, 4, 1, 0, 0))));
+  }
+
+  /**
+   * Tests that the parallel path gives the same result as the sequential one.
+   */
+  public void testParallelMatchesSequential() {
+    List<ApiData> dataList = hourly(LocalDateTime.of(2020, 1, 1, 0, 0), 24 * 366 * 3);
+    Aggregator aggregator = Aggregator.months(YearMonth.of(2020, 1), YearMonth.of(2022, 12));
+    Aggregator.Aggregates sequential = aggregator.aggregate(dataList);
+    Aggregator.Aggregates parallel = aggregator.aggregateParallel(dataList);
+
+    // Assert: Every bucket matches
+    for (int i = 0; i < sequential.size(); i++) {
+      assertEquals(sequential.getMeanPrice(i), parallel.getMeanPrice(i), 1e-9);
+      assertEquals(sequential.getUsage(i), parallel.getUsage(i), 1e-9);
+      assertEquals(sequential.getMinPrice(i), parallel.getMinPrice(i), 1e-9);
+      assertEquals(sequential.getMaxPrice(i), parallel.getMaxPrice(i), 1e-9);
+      assertEquals(sequential.getMeanTemperature(i), parallel.getMeanTemperature(i), 1e-9);
+    }
+  }
+
+  /**
+   * Tests that points added one at a time give the same result as aggregating the list.
+   */
+  public void testStreamingMatchesList() {
+    List<ApiData> dataList = hourly(LocalDateTime.of(2024, 1, 1, 0, 0), 72);
+    Aggregator buckets = Aggregator.days(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 3));
+    Aggregator.Aggregates expected = buckets.aggregate(dataList);
+
+    Aggregator.Aggregates streamed = buckets.newAggregates();
+    for (ApiData data : dataList) {
+      long minute = TimeSeries.toEpochMinute(data.date);
+      streamed.addPrice(minute, data.interval, data.price);
+      streamed.addUsage(minute, data.usage);
+      if (data.temperatureMean != null) {
+        streamed.addTemperature(minute, data.temperatureMean);
+      }
+    }
+
+    assertEquals(60, streamed.getPriceInterval());
+    for (int i = 0; i < buckets.size(); i++) {
+      assertEquals(expected.getMeanPrice(i), streamed.getMeanPrice(i), 1e-9);
+      assertEquals(expected.getMinPrice(i), streamed.getMinPrice(i), 1e-9);
+      assertEquals(expected.getMaxPrice(i), streamed.getMaxPrice(i), 1e-9);
+      assertEquals(expected.getUsage(i), streamed.getUsage(i), 1e-9);
+      assertEquals(expected.getMeanTemperature(i), streamed.getMeanTemperature(i), 1e-9);
+      assertEquals(expected.coveredMinutes[i], streamed.coveredMinutes[i]);
+    }
+  }
+
+  /**
+   * Tests that merging zones averages prices, sums usage and keeps the covered time.
+   */
+  public void testMergeZone() {
+    Aggregator buckets = Aggregator.days(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 1));
+    long start = LocalDate.of(2024, 1, 1).toEpochDay() * 1440;
+    Aggregator.Aggregates first = buckets.newAggregates();
+    Aggregator.Aggregates second = buckets.newAggregates();
+    for (int hour = 0; hour < 24; hour++) {
+      first.addPrice(start + hour * 60, 60, 10);
+      first.addUsage(start + hour * 60, 1);
+      second.addPrice(start + hour * 60, 60, 30);
+      second.addUsage(start + hour * 60, 2);
+    }
+    // Assert: Points outside the buckets are ignored
+    first.addPrice(start + 1440, 60, 1000);
+
+    first.mergeZone(second);
+
+    // Assert: The second zone uses twice as much, so its price weighs twice as much
+    assertEquals(70.0 / 3, first.getMeanPrice(0), 1e-9);
+    assertEquals(72.0, first.getUsage(0), 1e-9);
+    assertEquals(1440, first.coveredMinutes[0]);
+  }
+
+  /**
+   * Tests that merging streamed zone aggregates gives the same prices as aggregating the zones
+   * merged by SeriesMerger, which fetchZoneBreakdown uses, when a bucket is a single step.
+   */
+  public void testMergeZoneMatchesMergedSeries() {
+    long start = LocalDate.of(2024, 1, 1).toEpochDay() * 1440;
+    TimeSeries north = new TimeSeries(start, 60, 24);
+    TimeSeries south = new TimeSeries(start, 60, 24);
+    for (int i = 0; i < 24; i++) {
+      north.getPrice()[i] = 10 + i;
+      north.getUsage()[i] = 100 + 10 * i;
+      south.getPrice()[i] = 50 - i;
+      south.getUsage()[i] = 400 - 5 * i;
+    }
+    // No usage for the north in the last hour, only the south is weighted there
+    north.getUsage()[23] = Double.NaN;
+    Aggregator hours = Aggregator.fixed(start, 60, 24);
+
+    Aggregator.Aggregates merged = hours.aggregate(SeriesMerger.mergeZones(
+        List.of(north, south), SeriesMerger.LoadResampling.MEAN));
+    Aggregator.Aggregates streamed = streamed(hours, north).mergeZone(streamed(hours, south));
+
+    for (int i = 0; i < 24; i++) {
+      assertEquals(merged.getMeanPrice(i), streamed.getMeanPrice(i), 1e-9);
+      assertEquals(merged.getUsage(i), streamed.getUsage(i), 1e-9);
+    }
+  }
+
+  private static Aggregator.Aggregates streamed(Aggregator buckets, TimeSeries zone) {
+    Aggregator.Aggregates aggregates = buckets.newAggregates();
+    for (int i = 0; i < zone.size(); i++) {
+      aggregates.addPrice(zone.minuteAt(i), zone.getStepMinutes(), zone.getPrice()[i]);
+      aggregates.addUsage(zone.minuteAt(i), zone.getUsage()[i]);
+    }
+    return aggregates;
+  }
+}
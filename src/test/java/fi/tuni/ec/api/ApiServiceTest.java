@@ -2,10 +2,20 @@ package fi.tuni.ec.api;
 
 import fi.tuni.ec.api.ApiData;
 import fi.tuni.ec.api.ApiService;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import junit.framework.TestCase;
 
 /**
@@ -110,4 +120,155 @@ public class ApiServiceTest extends TestCase {
           IOException.class);
     }
   }
+
+  /**
+   * Tests that requests still open at the deadline are cancelled and the fetch fails.
+   */
+  public void testDeadlineCancelsRequests() throws Exception {
+    CountDownLatch interrupted = new CountDownLatch(2);
+    ApiService service = fakeService(url -> block(interrupted));
+    service.setFetchTimeout(Duration.ofMillis(200));
+
+    try {
+      fetchDay(service);
+      fail("Fetch should time out");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("timed out"));
+    }
+
+    // Assert: Both the price and the temperature request were interrupted
+    assertTrue("Open requests should be cancelled", interrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Tests that a failed request fails the fetch and cancels the requests still open.
+   */
+  public void testPartialFailureCancelsOthers() throws Exception {
+    CountDownLatch interrupted = new CountDownLatch(1);
+    ApiService service = fakeService(url -> {
+      if (url.contains("documentType=A44")) {
+        throw new HttpTransport.StatusException(400, null);
+      }
+      return block(interrupted);
+    });
+
+    try {
+      fetchDay(service);
+      fail("Fetch should fail");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("HTTP 400"));
+    }
+
+    // Assert: The temperature request was not left running
+    assertTrue("Open requests should be cancelled", interrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Tests that a throttled request is retried and its data used.
+   */
+  public void testRetriesThrottledRequest() throws Exception {
+    AtomicInteger priceRequests = new AtomicInteger();
+    ApiService service = fakeService(url -> {
+      if (url.contains("documentType=A44")) {
+        if (priceRequests.incrementAndGet() == 1) {
+          throw new HttpTransport.StatusException(429, Duration.ZERO);
+        }
+        return document("price.amount", 42);
+      }
+      if (url.contains("documentType=A65")) {
+        return document("quantity", 1000);
+      }
+      return temperatures(url);
+    });
+
+    Aggregator.Aggregates aggregates = fetchDay(service);
+
+    // Assert: The second attempt was used
+    assertEquals(2, priceRequests.get());
+    assertEquals(42.0, aggregates.getMeanPrice(0), 1e-9);
+    assertEquals(1000.0, aggregates.getUsage(0), 1e-9);
+  }
+
+  /**
+   * Tests that a task returning null fails the fetch instead of throwing a
+   * NullPointerException.
+   */
+  public void testNullResultFails() throws Exception {
+    ApiService service = fakeService(url -> block(new CountDownLatch(1)));
+    Method method = ApiService.class.getDeclaredMethod("invokeAllWithDeadline", List.class);
+    method.setAccessible(true);
+    List<Callable<?>> tasks = List.of(() -> "data", () -> null);
+
+    try {
+      method.invoke(service, tasks);
+      fail("IOException was not thrown");
+    } catch (InvocationTargetException e) {
+      assertEquals(IOException.class, e.getCause().getClass());
+    }
+  }
+
+  /**
+   * Answers a request of the fake transport.
+   */
+  private interface Handler {
+    InputStream get(String url) throws IOException;
+  }
+
+  private static ApiService fakeService(Handler handler) {
+    HttpTransport transport = new HttpTransport(new HttpTransport.Builder()) {
+      @Override
+      public InputStream get(String url) throws IOException {
+        return handler.get(url);
+      }
+    };
+    RequestScheduler scheduler = new RequestScheduler.Builder()
+        .retry(3, Duration.ofMillis(1), Duration.ofMillis(5))
+        .build();
+    return new ApiService(transport, null, null, scheduler);
+  }
+
+  private static Aggregator.Aggregates fetchDay(ApiService service) throws Exception {
+    LocalDate day = LocalDate.of(2024, 1, 1);
+    return service.fetchAggregates(
+        "Finland", "202401010000", "202401012300", Aggregator.days(day, day));
+  }
+
+  // Waits until interrupted, like a request that gets no answer
+  private static InputStream block(CountDownLatch interrupted) throws IOException {
+    try {
+      Thread.sleep(60_000);
+    } catch (InterruptedException e) {
+      interrupted.countDown();
+      throw new InterruptedIOException("Request cancelled");
+    }
+    throw new IOException("Request was not cancelled");
+  }
+
+  // ENTSO-E document with a single hourly point at the start of the day
+  private static InputStream document(String element, double value) {
+    String xml = """
+        <?xml version="1.0" encoding="utf-8"?>
+        <Publication_MarketDocument>
+          <TimeSeries>
+            <Period>
+              <timeInterval>
+                <start>2024-01-01T00:00Z</start>
+                <end>2024-01-01T01:00Z</end>
+              </timeInterval>
+              <resolution>PT60M</resolution>
+              <Point><position>1</position><%1$s>%2$s</%1$s></Point>
+            </Period>
+          </TimeSeries>
+        </Publication_MarketDocument>
+        """.formatted(element, value);
+    return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+  }
+
+  // Open-Meteo answer without temperatures for every location of the request
+  private static InputStream temperatures(String url) {
+    String latitudes = url.replaceAll(".*[?&]latitude=([^&]*).*", "$1");
+    int locations = latitudes.split(",").length;
+    String json = locations == 1 ? "{}" : "[" + "{},".repeat(locations - 1) + "{}]";
+    return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+  }
 }
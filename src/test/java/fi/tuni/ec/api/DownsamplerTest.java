@@ -0,0 +1,70 @@
+package fi.tuni.ec.api;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing Downsampler.
+ */
+public class DownsamplerTest extends TestCase {
+
+  // A year of 15 minute points with a single price spike
+  private static List<ApiData> quarterHourly(int spikeIndex) {
+    List<ApiData> dataList = new ArrayList<>();
+    LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+    for (int i = 0; i < 96 * 366; i++) {
+      ApiData data = new ApiData();
+      data.date = start.plusMinutes(15L * i);
+      data.interval = 15;
+      data.price = i == spikeIndex ? 1000 : Math.sin(i / 96.0);
+      data.usage = 5000 + (i % 96);
+      dataList.add(data);
+    }
+    return dataList;
+  }
+
+  /**
+   * Tests that LTTB stays within the target, keeps the ends and keeps a spike.
+   */
+  public void testLttb() {
+    List<ApiData> dataList = quarterHourly(12345);
+    List<ApiData> result = Downsampler.downsample(dataList, 1000, Downsampler.Mode.LTTB);
+
+    // Assert: Result fits the target and is in time order
+    assertTrue("Result should fit the target", result.size() <= 1000);
+    assertSame(dataList.getFirst(), result.getFirst());
+    assertSame(dataList.getLast(), result.getLast());
+    for (int i = 1; i < result.size(); i++) {
+      assertTrue(result.get(i).date.isAfter(result.get(i - 1).date));
+    }
+
+    // Assert: The spike is kept
+    assertTrue("Spike should be kept", result.contains(dataList.get(12345)));
+  }
+
+  /**
+   * Tests that min/max decimation stays within the target and keeps the extremes.
+   */
+  public void testMinMax() {
+    List<ApiData> dataList = quarterHourly(20000);
+    List<ApiData> result = Downsampler.downsample(dataList, 500, Downsampler.Mode.MIN_MAX);
+
+    // Assert: Result fits the target and keeps the spike
+    assertTrue("Result should fit the target", result.size() <= 500);
+    assertTrue("Spike should be kept", result.contains(dataList.get(20000)));
+  }
+
+  /**
+   * Tests that raw mode and small inputs are returned as is.
+   */
+  public void testNoDownsampling() {
+    List<ApiData> dataList = quarterHourly(0);
+
+    // Assert: Nothing is dropped
+    assertSame(dataList, Downsampler.downsample(dataList, 1000, Downsampler.Mode.RAW));
+    assertSame(dataList, Downsampler.downsample(dataList, dataList.size(),
+        Downsampler.Mode.LTTB));
+  }
+}
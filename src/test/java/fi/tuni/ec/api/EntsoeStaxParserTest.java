@@ -0,0 +1,135 @@
+package fi.tuni.ec.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing EntsoeStaxParser.
+ */
+public class EntsoeStaxParserTest extends TestCase {
+
+  // Trimmed A44 document with three Periods, the last an A03 curve that leaves out positions
+  private static final String DOCUMENT = """
+      <?xml version="1.0" encoding="utf-8"?>
+      <Publication_MarketDocument xmlns="urn:iec62325.351:tc57wg16:451-3:publicationdocument:7:3">
+        <period.timeInterval>
+          <start>2023-12-31T23:00Z</start>
+          <end>2024-01-02T23:00Z</end>
+        </period.timeInterval>
+        <TimeSeries>
+          <Period>
+            <timeInterval>
+              <start>2023-12-31T23:00Z</start>
+              <end>2024-01-01T02:00Z</end>
+            </timeInterval>
+            <resolution>PT60M</resolution>
+            <Point><position>1</position><price.amount>10.5</price.amount></Point>
+            <Point><position>2</position><price.amount>11.25</price.amount></Point>
+            <Point><position>3</position><price.amount>-1.0</price.amount></Point>
+          </Period>
+        </TimeSeries>
+        <TimeSeries>
+          <Period>
+            <timeInterval>
+              <start>2024-01-01T23:00Z</start>
+              <end>2024-01-01T23:30Z</end>
+            </timeInterval>
+            <resolution>PT15M</resolution>
+            <Point><position>1</position><price.amount>20</price.amount></Point>
+            <Point><position>2</position><price.amount>21</price.amount></Point>
+          </Period>
+        </TimeSeries>
+        <TimeSeries>
+          <curveType>A03</curveType>
+          <Period>
+            <timeInterval>
+              <start>2024-01-02T00:00Z</start>
+              <end>2024-01-02T01:00Z</end>
+            </timeInterval>
+            <resolution>PT15M</resolution>
+            <Point><position>1</position><price.amount>30</price.amount></Point>
+            <Point><position>3</position><price.amount>32</price.amount></Point>
+          </Period>
+        </TimeSeries>
+      </Publication_MarketDocument>
+      """;
+
+  private static InputStream documentStream() {
+    return new ByteArrayInputStream(DOCUMENT.strip().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Tests that points are emitted with their values, resolutions and times.
+   *
+   * @throws Exception if parsing fails.
+   */
+  public void testParse() throws Exception {
+    List<double[]> points = new ArrayList<>();
+    EntsoeStaxParser.parse(documentStream(), "price.amount",
+        (epochMinute, interval, value) -> points.add(new double[] {epochMinute, interval, value}));
+
+    // Assert: All points of every Period are emitted in order
+    assertEquals(9, points.size());
+    assertEquals(10.5, points.get(0)[2]);
+    assertEquals(-1.0, points.get(2)[2]);
+    assertEquals(60.0, points.get(0)[1]);
+    assertEquals(15.0, points.get(4)[1]);
+
+    // Assert: Points within a Period are spaced by the resolution
+    assertEquals(60.0, points.get(1)[0] - points.get(0)[0]);
+    assertEquals(15.0, points.get(4)[0] - points.get(3)[0]);
+
+    // Assert: Position 1 is at the start of its Period
+    long start = TimeSeries.toEpochMinute(LocalDateTime.of(2023, 12, 31, 23, 0));
+    assertEquals((double) start, points.get(0)[0]);
+    assertEquals((double) start + 24 * 60, points.get(3)[0]);
+
+    // Assert: The A03 curve repeats values up to the next position and the end of the Period
+    double[] expected = {30, 30, 32, 32};
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals((double) start + 25 * 60 + 15 * i, points.get(5 + i)[0]);
+      assertEquals(expected[i], points.get(5 + i)[2]);
+    }
+  }
+
+  /**
+   * Tests that the DOM and StAX parsers produce the same data.
+   *
+   * @throws Exception if parsing fails.
+   */
+  @SuppressWarnings("unchecked")
+  public void testMatchesDomParser() throws Exception {
+    ApiService apiService = new ApiService(null, null);
+    Method method = ApiService.class.getDeclaredMethod(
+        "parseResponse", InputStream.class, String.class, HourlyTemperature.class);
+    method.setAccessible(true);
+    HourlyTemperature temperatures = new HourlyTemperature(
+        TimeSeries.toEpochMinute(LocalDateTime.of(2024, 1, 1, 0, 0)), 24);
+    Arrays.fill(temperatures.getValues(), 3.5);
+
+    apiService.setParserType(ApiService.ParserType.DOM);
+    List<ApiData> dom = (List<ApiData>) method.invoke(
+        apiService, documentStream(), "price", temperatures);
+    apiService.setParserType(ApiService.ParserType.STAX);
+    List<ApiData> stax = (List<ApiData>) method.invoke(
+        apiService, documentStream(), "price", temperatures);
+
+    // Assert: Both parsers return the same points
+    assertEquals(dom.size(), stax.size());
+    for (int i = 0; i < dom.size(); i++) {
+      assertEquals(dom.get(i).date, stax.get(i).date);
+      assertEquals(dom.get(i).price, stax.get(i).price);
+      assertEquals(dom.get(i).interval, stax.get(i).interval);
+      assertEquals(dom.get(i).temperatureMean, stax.get(i).temperatureMean);
+    }
+    assertEquals(LocalDateTime.of(2024, 1, 1, 1, 0), stax.get(2).date);
+    assertEquals(3.5, stax.get(2).temperatureMean, 1e-9);
+  }
+}
@@ -0,0 +1,55 @@
+package fi.tuni.ec.api;
+
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing HourlyTemperature.
+ */
+public class HourlyTemperatureTest extends TestCase {
+
+  private static HourlyTemperature hours(double... values) {
+    HourlyTemperature temperature = new HourlyTemperature(1440, values.length);
+    System.arraycopy(values, 0, temperature.getValues(), 0, values.length);
+    return temperature;
+  }
+
+  /**
+   * Tests that a time is joined to the hour containing it.
+   */
+  public void testAt() {
+    HourlyTemperature temperature = hours(1, 2, 3);
+
+    assertEquals(1.0, temperature.at(1440), 1e-9);
+    assertEquals(2.0, temperature.at(1440 + 119), 1e-9);
+    assertTrue(Double.isNaN(temperature.at(1439)));
+    assertTrue(Double.isNaN(temperature.at(1440 + 180)));
+  }
+
+  /**
+   * Tests that steps shorter than an hour get the temperature of their hour.
+   */
+  public void testFillQuarterHours() {
+    TimeSeries series = new TimeSeries(1440 + 30, 15, 6);
+
+    hours(1, 2, 3).fill(series);
+
+    double[] expected = {1, 1, 2, 2, 2, 2};
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], series.getTemperature()[i], 1e-9);
+    }
+  }
+
+  /**
+   * Tests that longer steps get the mean of the hours they cover, skipping missing hours.
+   */
+  public void testFillLongSteps() {
+    TimeSeries series = new TimeSeries(1440, 120, 3);
+
+    hours(1, 3, Double.NaN, 5).fill(series);
+
+    assertEquals(2.0, series.getTemperature()[0], 1e-9);
+    assertEquals(5.0, series.getTemperature()[1], 1e-9);
+    // Assert: Steps after the range stay missing
+    assertTrue(Double.isNaN(series.getTemperature()[2]));
+  }
+}
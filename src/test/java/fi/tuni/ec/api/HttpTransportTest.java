@@ -0,0 +1,104 @@
+package fi.tuni.ec.api;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing HttpTransport against a local server.
+ */
+public class HttpTransportTest extends TestCase {
+
+  private HttpServer server;
+  private HttpTransport transport;
+  private String base;
+  private final AtomicInteger requests = new AtomicInteger();
+
+  @Override
+  protected void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/ok", exchange -> {
+      requests.incrementAndGet();
+      byte[] body = "data".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    // Throttled on the first request, answered on the next
+    server.createContext("/throttled", exchange -> {
+      if (requests.incrementAndGet() == 1) {
+        exchange.getResponseHeaders().add("Retry-After", "0");
+        exchange.sendResponseHeaders(429, -1);
+        exchange.close();
+        return;
+      }
+      byte[] body = "late".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.createContext("/slow-down", exchange -> {
+      requests.incrementAndGet();
+      exchange.getResponseHeaders().add("Retry-After", "7");
+      exchange.sendResponseHeaders(503, -1);
+      exchange.close();
+    });
+    server.start();
+    base = "http://127.0.0.1:" + server.getAddress().getPort();
+    transport = new HttpTransport.Builder().build();
+  }
+
+  @Override
+  protected void tearDown() {
+    transport.shutdown();
+    server.stop(0);
+  }
+
+  /**
+   * Tests that a successful response is returned as a stream.
+   */
+  public void testGet() throws Exception {
+    try (InputStream stream = transport.get(base + "/ok")) {
+      assertEquals("data", new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Tests that other statuses are reported with the server's Retry-After.
+   */
+  public void testStatusException() throws Exception {
+    try {
+      transport.get(base + "/slow-down");
+      fail("StatusException was not thrown");
+    } catch (HttpTransport.StatusException e) {
+      assertEquals(503, e.getCode());
+      assertEquals(Duration.ofSeconds(7), e.getRetryAfter());
+    }
+  }
+
+  /**
+   * Tests that a throttled response is retried through the request scheduler.
+   */
+  public void testRetriedThroughScheduler() throws IOException, InterruptedException {
+    RequestScheduler scheduler = new RequestScheduler.Builder()
+        .retry(3, Duration.ofMillis(1), Duration.ofMillis(5))
+        .build();
+
+    try (InputStream stream = scheduler.execute(
+        RequestScheduler.Priority.INTERACTIVE, () -> transport.get(base + "/throttled"))) {
+      assertEquals("late", new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    // Assert: One retry after the 429
+    assertEquals(2, requests.get());
+    assertEquals(1, scheduler.getRetries());
+  }
+}
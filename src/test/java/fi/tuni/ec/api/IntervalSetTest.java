@@ -0,0 +1,58 @@
+package fi.tuni.ec.api;
+
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing IntervalSet.
+ */
+public class IntervalSetTest extends TestCase {
+
+  /**
+   * Tests that overlapping and adjacent intervals are merged.
+   */
+  public void testAddMerges() {
+    IntervalSet set = new IntervalSet();
+    set.add(0, 10);
+    set.add(20, 30);
+    set.add(10, 15);
+    set.add(25, 40);
+
+    // Assert: Touching intervals join, the gap between them stays
+    assertTrue(set.covers(0, 15));
+    assertTrue(set.covers(20, 40));
+    assertFalse(set.covers(0, 20));
+    assertFalse(set.covers(14, 21));
+
+    set.add(15, 20);
+    assertTrue("Filling the gap should join everything", set.covers(0, 40));
+  }
+
+  /**
+   * Tests that only the missing parts of a range are returned.
+   */
+  public void testMissing() {
+    IntervalSet set = new IntervalSet();
+    set.add(10, 20);
+    set.add(30, 40);
+
+    List<long[]> gaps = set.missing(0, 50);
+
+    // Assert: Gaps before, between and after the intervals
+    assertEquals(3, gaps.size());
+    assertEquals(0, gaps.get(0)[0]);
+    assertEquals(10, gaps.get(0)[1]);
+    assertEquals(20, gaps.get(1)[0]);
+    assertEquals(30, gaps.get(1)[1]);
+    assertEquals(40, gaps.get(2)[0]);
+    assertEquals(50, gaps.get(2)[1]);
+
+    // Assert: Ranges starting inside an interval and covered ranges
+    gaps = set.missing(15, 35);
+    assertEquals(1, gaps.size());
+    assertEquals(20, gaps.getFirst()[0]);
+    assertEquals(30, gaps.getFirst()[1]);
+    assertTrue(set.missing(12, 18).isEmpty());
+    assertEquals(1, new IntervalSet().missing(5, 6).size());
+  }
+}
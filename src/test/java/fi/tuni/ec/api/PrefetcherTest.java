@@ -0,0 +1,144 @@
+package fi.tuni.ec.api;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing Prefetcher.
+ */
+public class PrefetcherTest extends TestCase {
+
+  private static Prefetcher.Period day(int dayOfMonth) {
+    LocalDate date = LocalDate.of(2024, 3, dayOfMonth);
+    return new Prefetcher.Period("Finland", date, date);
+  }
+
+  /**
+   * Tests that planned periods are loaded in order and not loaded again while still wanted.
+   */
+  public void testLoadsInOrder() throws Exception {
+    List<Prefetcher.Period> loaded = new CopyOnWriteArrayList<>();
+    Prefetcher prefetcher = new Prefetcher(loaded::add, null, 6);
+    try {
+      prefetcher.prefetch(List.of(day(1), day(2), day(1)));
+      waitUntilIdle(prefetcher);
+      prefetcher.prefetch(List.of(day(2), day(3)));
+      waitUntilIdle(prefetcher);
+
+      assertEquals(List.of(day(1), day(2), day(3)), loaded);
+    } finally {
+      prefetcher.shutdown();
+    }
+  }
+
+  /**
+   * Tests that periods no longer wanted are cancelled and the kept period keeps loading.
+   */
+  public void testCancelExcept() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<Prefetcher.Period> loaded = new CopyOnWriteArrayList<>();
+    Prefetcher prefetcher = new Prefetcher(period -> {
+      if (period.equals(day(1))) {
+        started.countDown();
+        release.await();
+      }
+      loaded.add(period);
+    }, null, 6);
+    try {
+      prefetcher.prefetch(List.of(day(1), day(2), day(3)));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+
+      prefetcher.cancelExcept(day(1));
+      assertEquals(List.of(day(1)), prefetcher.getPlanned());
+      release.countDown();
+      waitUntilIdle(prefetcher);
+
+      assertEquals(List.of(day(1)), loaded);
+    } finally {
+      prefetcher.shutdown();
+    }
+  }
+
+  /**
+   * Tests that the number of planned periods is capped.
+   */
+  public void testMaxPeriods() throws Exception {
+    List<Prefetcher.Period> loaded = new CopyOnWriteArrayList<>();
+    Prefetcher prefetcher = new Prefetcher(loaded::add, null, 2);
+    try {
+      prefetcher.prefetch(List.of(day(1), day(2), day(3)));
+      waitUntilIdle(prefetcher);
+
+      assertEquals(List.of(day(1), day(2)), loaded);
+    } finally {
+      prefetcher.shutdown();
+    }
+  }
+
+  /**
+   * Tests that a full cache of opened data does not stop prefetching.
+   */
+  public void testRunsWhenCacheFull() throws Exception {
+    Path directory = Files.createTempDirectory("prefetch-test");
+    ResponseCache cache = new ResponseCache(
+        directory, 1000, Duration.ofMinutes(15), Clock.systemUTC());
+    cache.put("area", "A44", "202403010000", "202403020000", new byte[900]);
+    List<Prefetcher.Period> loaded = new CopyOnWriteArrayList<>();
+    Prefetcher prefetcher = new Prefetcher(loaded::add, cache, 6);
+    try {
+      prefetcher.prefetch(List.of(day(1)));
+      waitUntilIdle(prefetcher);
+
+      assertEquals(List.of(day(1)), loaded);
+    } finally {
+      prefetcher.shutdown();
+      cache.clear();
+    }
+  }
+
+  /**
+   * Tests that prefetching stops once its budget is used and resumes after the prefetched
+   * entries are evicted.
+   */
+  public void testResumesAfterEviction() throws Exception {
+    Path directory = Files.createTempDirectory("prefetch-test");
+    ResponseCache cache = new ResponseCache(
+        directory, 1000, Duration.ofMinutes(15), Clock.systemUTC());
+    cache.put("area", "A44", "202403010000", "202403020000", new byte[300], true);
+    List<Prefetcher.Period> loaded = new CopyOnWriteArrayList<>();
+    Prefetcher prefetcher = new Prefetcher(loaded::add, cache, 6);
+    try {
+      prefetcher.prefetch(List.of(day(1)));
+      waitUntilIdle(prefetcher);
+      assertTrue("Budget is used", loaded.isEmpty());
+
+      // Data the user opens pushes the prefetched entry out
+      cache.put("area", "A44", "202403020000", "202403030000", new byte[400]);
+      cache.put("area", "A44", "202403030000", "202403040000", new byte[400]);
+      assertEquals(0, cache.getPrefetchedBytes());
+
+      prefetcher.prefetch(List.of(day(2)));
+      waitUntilIdle(prefetcher);
+      assertEquals(List.of(day(2)), loaded);
+    } finally {
+      prefetcher.shutdown();
+      cache.clear();
+    }
+  }
+
+  private static void waitUntilIdle(Prefetcher prefetcher) throws InterruptedException {
+    for (int i = 0; i < 500 && !prefetcher.getPlanned().isEmpty(); i++) {
+      Thread.sleep(10);
+    }
+    assertTrue("Prefetch did not finish", prefetcher.getPlanned().isEmpty());
+  }
+}
@@ -0,0 +1,90 @@
+package fi.tuni.ec.api;
+
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing RangePlanner.
+ */
+public class RangePlannerTest extends TestCase {
+
+  /**
+   * Tests that short periods are fetched in one request.
+   */
+  public void testShortPeriod() {
+    List<String[]> chunks = RangePlanner.plan("A44", "202401010000", "202401312300");
+
+    // Assert: Period is kept as is
+    assertEquals(1, chunks.size());
+    assertEquals("202401010000", chunks.get(0)[0]);
+    assertEquals("202401312300", chunks.get(0)[1]);
+  }
+
+  /**
+   * Tests that a year is split into contiguous chunks within the request limit.
+   */
+  public void testYear() {
+    int maxDays = RangePlanner.maxDaysPerRequest("A65");
+    List<String[]> chunks = RangePlanner.plan("A65", "202401010000", "202412312300");
+
+    // Assert: Chunk count follows the per-request limit
+    assertTrue("Chunks should be within a year", maxDays <= 365);
+    assertEquals((int) Math.ceil(366.0 / maxDays), chunks.size());
+
+    // Assert: Chunks start and end on the period edges and follow each other
+    assertEquals("202401010000", chunks.getFirst()[0]);
+    assertEquals("202412312300", chunks.getLast()[1]);
+    for (int i = 1; i < chunks.size(); i++) {
+      assertEquals(chunks.get(i - 1)[1], chunks.get(i)[0]);
+      assertTrue(chunks.get(i)[0].endsWith("0000"));
+    }
+  }
+
+  /**
+   * Tests splitting into fixed size chunks.
+   */
+  public void testSplit() {
+    List<String[]> chunks = RangePlanner.split("202401010000", "202401102300", 4);
+
+    // Assert: Ten days in chunks of four days
+    assertEquals(3, chunks.size());
+    assertEquals("202401050000", chunks.get(0)[1]);
+    assertEquals("202401050000", chunks.get(1)[0]);
+    assertEquals("202401090000", chunks.get(2)[0]);
+    assertEquals("202401102300", chunks.get(2)[1]);
+  }
+
+  /**
+   * Tests that the chunks put back together cover every hour of the period exactly once.
+   */
+  public void testChunksCoverEveryHour() {
+    String periodStart = "202401010000";
+    String periodEnd = "202401110000";
+    List<String[]> chunks = RangePlanner.split(periodStart, periodEnd, 3);
+
+    for (long hour = SeriesStore.toMinute(periodStart); hour < SeriesStore.toMinute(periodEnd);
+        hour += 60) {
+      int covering = 0;
+      for (String[] chunk : chunks) {
+        // Periods of the API are half-open
+        if (SeriesStore.toMinute(chunk[0]) <= hour && hour < SeriesStore.toMinute(chunk[1])) {
+          covering++;
+        }
+      }
+      assertEquals("Hour " + hour, 1, covering);
+    }
+  }
+
+  /**
+   * Tests that a period of a whole number of chunks ending at midnight has no empty chunk.
+   */
+  public void testExactMultipleEndingAtMidnight() {
+    List<String[]> chunks = RangePlanner.split("202401010000", "202401070000", 3);
+
+    // Assert: Two chunks of three days, the last one ends at the end of the period
+    assertEquals(2, chunks.size());
+    assertEquals("202401040000", chunks.get(0)[1]);
+    assertEquals("202401040000", chunks.get(1)[0]);
+    assertEquals("202401070000", chunks.get(1)[1]);
+  }
+}
@@ -0,0 +1,180 @@
+package fi.tuni.ec.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing RequestScheduler.
+ */
+public class RequestSchedulerTest extends TestCase {
+
+  private static InputStream body() {
+    return new ByteArrayInputStream(new byte[] {1});
+  }
+
+  /**
+   * Tests that throttled responses are retried until one succeeds.
+   */
+  public void testRetriesThrottledResponses() throws Exception {
+    RequestScheduler scheduler = new RequestScheduler.Builder()
+        .retry(4, Duration.ofMillis(1), Duration.ofMillis(5))
+        .build();
+    AtomicInteger attempts = new AtomicInteger();
+
+    try (InputStream stream = scheduler.execute(RequestScheduler.Priority.INTERACTIVE, () -> {
+      if (attempts.incrementAndGet() < 3) {
+        throw new HttpTransport.StatusException(attempts.get() == 1 ? 429 : 503, null);
+      }
+      return body();
+    })) {
+      assertEquals(1, stream.read());
+    }
+
+    assertEquals(3, attempts.get());
+    assertEquals(2, scheduler.getRetries());
+  }
+
+  /**
+   * Tests that other errors and the last failed attempt are passed on.
+   */
+  public void testGivesUp() throws Exception {
+    RequestScheduler scheduler = new RequestScheduler.Builder()
+        .retry(2, Duration.ofMillis(1), Duration.ofMillis(5))
+        .build();
+    AtomicInteger attempts = new AtomicInteger();
+
+    try {
+      scheduler.execute(RequestScheduler.Priority.INTERACTIVE, () -> {
+        attempts.incrementAndGet();
+        throw new HttpTransport.StatusException(400, null);
+      });
+      fail("Expected HTTP 400");
+    } catch (HttpTransport.StatusException e) {
+      assertEquals(400, e.getCode());
+    }
+    assertEquals("Client errors should not be retried", 1, attempts.get());
+
+    attempts.set(0);
+    try {
+      scheduler.execute(RequestScheduler.Priority.INTERACTIVE, () -> {
+        attempts.incrementAndGet();
+        throw new HttpTransport.StatusException(503, null);
+      });
+      fail("Expected HTTP 503");
+    } catch (HttpTransport.StatusException e) {
+      assertEquals(503, e.getCode());
+    }
+    assertEquals(2, attempts.get());
+
+    // Assert: Failed attempts gave their slots back
+    scheduler.execute(RequestScheduler.Priority.INTERACTIVE, RequestSchedulerTest::body).close();
+  }
+
+  /**
+   * Tests that the backoff grows, stays within its cap and honours Retry-After.
+   */
+  public void testBackoff() {
+    RequestScheduler scheduler = new RequestScheduler.Builder()
+        .retry(5, Duration.ofMillis(100), Duration.ofMillis(1000))
+        .build();
+
+    for (int i = 0; i < 20; i++) {
+      long first = scheduler.backoff(1, null).toMillis();
+      assertTrue(first >= 50 && first <= 100);
+      long capped = scheduler.backoff(10, null).toMillis();
+      assertTrue(capped >= 500 && capped <= 1000);
+    }
+    assertEquals(Duration.ofSeconds(7), scheduler.backoff(1, Duration.ofSeconds(7)));
+  }
+
+  /**
+   * Tests parsing of the Retry-After header.
+   */
+  public void testParseRetryAfter() {
+    Clock clock = Clock.fixed(Instant.parse("2024-03-01T12:00:00Z"), ZoneOffset.UTC);
+
+    assertEquals(Duration.ofSeconds(120), HttpTransport.parseRetryAfter("120", clock));
+    assertEquals(Duration.ofSeconds(30),
+        HttpTransport.parseRetryAfter("Fri, 01 Mar 2024 12:00:30 GMT", clock));
+    assertEquals(Duration.ZERO,
+        HttpTransport.parseRetryAfter("Fri, 01 Mar 2024 11:00:00 GMT", clock));
+    assertNull(HttpTransport.parseRetryAfter(null, clock));
+    assertNull(HttpTransport.parseRetryAfter("soon", clock));
+  }
+
+  /**
+   * Tests that requests beyond the burst wait for the bucket to refill.
+   */
+  public void testRateLimit() throws Exception {
+    // 1200 per minute is one request per 50 ms
+    RequestScheduler scheduler = new RequestScheduler.Builder()
+        .rateLimit(1200, 2)
+        .build();
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 6; i++) {
+      scheduler.execute(RequestScheduler.Priority.INTERACTIVE, RequestSchedulerTest::body)
+          .close();
+    }
+    long elapsed = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+    // Assert: Two requests go at once, the other four wait about 50 ms each
+    assertTrue("Elapsed " + elapsed + " ms", elapsed >= 180);
+  }
+
+  /**
+   * Tests that waiting interactive requests go before waiting background requests.
+   */
+  public void testInteractiveFirst() throws Exception {
+    RequestScheduler scheduler = new RequestScheduler.Builder()
+        .maxInFlight(1)
+        .build();
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+    // Hold the only slot while both classes queue up
+    InputStream held = scheduler.execute(RequestScheduler.Priority.BACKGROUND,
+        RequestSchedulerTest::body);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      threads.add(startRequest(scheduler, RequestScheduler.Priority.BACKGROUND, order));
+    }
+    Thread.sleep(50);
+    for (int i = 0; i < 3; i++) {
+      threads.add(startRequest(scheduler, RequestScheduler.Priority.INTERACTIVE, order));
+    }
+    Thread.sleep(50);
+    held.close();
+    for (Thread thread : threads) {
+      thread.join(5000);
+    }
+
+    assertEquals(List.of("INTERACTIVE", "INTERACTIVE", "INTERACTIVE",
+        "BACKGROUND", "BACKGROUND", "BACKGROUND"), order);
+  }
+
+  private static Thread startRequest(
+      RequestScheduler scheduler,
+      RequestScheduler.Priority priority,
+      List<String> order) {
+    Thread thread = new Thread(() -> {
+      try (InputStream stream = scheduler.execute(priority, RequestSchedulerTest::body)) {
+        stream.readAllBytes();
+        order.add(priority.name());
+      } catch (IOException | InterruptedException e) {
+        order.add(e.toString());
+      }
+    });
+    thread.start();
+    return thread;
+  }
+}
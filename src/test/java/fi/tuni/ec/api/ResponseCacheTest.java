@@ -0,0 +1,156 @@
+package fi.tuni.ec.api;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing ResponseCache.
+ */
+public class ResponseCacheTest extends TestCase {
+
+  private static final String AREA = "10YFI-1--------U";
+  private static final Clock CLOCK = Clock.fixed(
+      Instant.parse("2024-10-15T12:00:00Z"), ZoneOffset.UTC);
+
+  private Path directory;
+
+  /**
+   * Creates a temporary cache directory for each test.
+   *
+   * @throws Exception if the directory cannot be created.
+   */
+  protected void setUp() throws Exception {
+    super.setUp();
+    directory = Files.createTempDirectory("responseCacheTest");
+  }
+
+  /**
+   * Removes the cache directory after each test.
+   *
+   * @throws Exception if an error occurs.
+   */
+  protected void tearDown() throws Exception {
+    super.tearDown();
+    File[] files = directory.toFile().listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.toFile().delete();
+  }
+
+  /**
+   * Tests that stored entries are returned and survive a restart.
+   */
+  public void testPutAndGet() {
+    ResponseCache cache = new ResponseCache(directory, 1024 * 1024, Duration.ofMinutes(15), CLOCK);
+    byte[] body = "<xml>price</xml>".getBytes(StandardCharsets.UTF_8);
+    cache.put(AREA, "A44", "202401010000", "202401012300", body);
+
+    // Assert: Entry is found with the same key and not with another document type
+    assertEquals("<xml>price</xml>",
+        new String(cache.get(AREA, "A44", "202401010000", "202401012300"),
+            StandardCharsets.UTF_8));
+    assertNull("Different document type should miss",
+        cache.get(AREA, "A65", "202401010000", "202401012300"));
+
+    // Assert: A new cache over the same directory still has the entry
+    ResponseCache reopened = new ResponseCache(
+        directory, 1024 * 1024, Duration.ofMinutes(15), CLOCK);
+    assertNotNull("Entry should survive a restart",
+        reopened.get(AREA, "A44", "202401010000", "202401012300"));
+  }
+
+  /**
+   * Tests that periods reaching today expire after the short TTL and past periods do not.
+   */
+  public void testTodayExpires() {
+    ResponseCache cache = new ResponseCache(directory, 1024 * 1024, Duration.ofMinutes(15), CLOCK);
+    byte[] body = new byte[] {1, 2, 3};
+    cache.put(AREA, "A44", "202410150000", "202410152300", body);
+    cache.put(AREA, "A44", "202410010000", "202410012300", body);
+
+    ResponseCache later = new ResponseCache(directory, 1024 * 1024, Duration.ofMinutes(15),
+        Clock.offset(CLOCK, Duration.ofHours(1)));
+
+    // Assert: Today's entry has expired, the past one has not
+    assertNull("Today's entry should expire",
+        later.get(AREA, "A44", "202410150000", "202410152300"));
+    assertNotNull("Past entry should not expire",
+        later.get(AREA, "A44", "202410010000", "202410012300"));
+  }
+
+  /**
+   * Tests that recently ended periods still expire, since late data may change them.
+   */
+  public void testRecentPastExpires() {
+    ResponseCache cache = new ResponseCache(directory, 1024 * 1024, Duration.ofMinutes(15), CLOCK);
+    byte[] body = new byte[] {1, 2, 3};
+    cache.put(AREA, "A65", "202410140000", "202410142300", body);
+    cache.put(AREA, "A65", "202410130000", "202410132300", body);
+    cache.put(AREA, "A65", "202410120000", "202410122300", body);
+
+    ResponseCache later = new ResponseCache(directory, 1024 * 1024, Duration.ofMinutes(15),
+        Clock.offset(CLOCK, Duration.ofHours(1)));
+
+    // Assert: Yesterday and the day before expire, three days ago is kept
+    assertNull("Yesterday's entry should expire",
+        later.get(AREA, "A65", "202410140000", "202410142300"));
+    assertNull("Entry from two days ago should expire",
+        later.get(AREA, "A65", "202410130000", "202410132300"));
+    assertNotNull("Settled entry should not expire",
+        later.get(AREA, "A65", "202410120000", "202410122300"));
+  }
+
+  /**
+   * Tests that corrupted entries are detected and dropped.
+   *
+   * @throws Exception if the entry file cannot be modified.
+   */
+  public void testChecksumMismatch() throws Exception {
+    ResponseCache cache = new ResponseCache(directory, 1024 * 1024, Duration.ofMinutes(15), CLOCK);
+    cache.put(AREA, "A44", "202401010000", "202401012300", new byte[] {1, 2, 3, 4});
+
+    // Flip the last byte of the body
+    Path file;
+    try (var files = Files.list(directory)) {
+      file = files.findFirst().orElseThrow();
+    }
+    byte[] raw = Files.readAllBytes(file);
+    raw[raw.length - 1] = (byte) ~raw[raw.length - 1];
+    Files.write(file, raw);
+
+    // Assert: Corrupted entry is not returned and is removed
+    assertNull("Corrupted entry should miss",
+        cache.get(AREA, "A44", "202401010000", "202401012300"));
+    assertEquals(0, cache.size());
+  }
+
+  /**
+   * Tests that the least recently used entry is evicted when the size bound is exceeded.
+   */
+  public void testLruEviction() {
+    ResponseCache cache = new ResponseCache(directory, 250, Duration.ofMinutes(15), CLOCK);
+    byte[] body = new byte[100];
+    cache.put(AREA, "A44", "202401010000", "202401012300", body);
+    cache.put(AREA, "A44", "202401020000", "202401022300", body);
+
+    // Touch the first entry so the second becomes the least recently used
+    assertNotNull(cache.get(AREA, "A44", "202401010000", "202401012300"));
+    cache.put(AREA, "A44", "202401030000", "202401032300", body);
+
+    // Assert: Second entry was evicted, the others remain
+    assertNotNull(cache.get(AREA, "A44", "202401010000", "202401012300"));
+    assertNull(cache.get(AREA, "A44", "202401020000", "202401022300"));
+    assertNotNull(cache.get(AREA, "A44", "202401030000", "202401032300"));
+    assertTrue("Cache should stay within its bound", cache.size() <= 250);
+  }
+}
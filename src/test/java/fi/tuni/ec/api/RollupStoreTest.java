@@ -0,0 +1,151 @@
+package fi.tuni.ec.api;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing RollupStore.
+ */
+public class RollupStoreTest extends TestCase {
+
+  private static final Clock CLOCK = Clock.fixed(
+      Instant.parse("2024-03-15T12:00:00Z"), ZoneOffset.UTC);
+
+  // Hourly points from 00:00 to 23:00 of each day, price equals the hour
+  private static List<ApiData> hourly(LocalDate from, LocalDate to) {
+    List<ApiData> dataList = new ArrayList<>();
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      for (int hour = 0; hour < 24; hour++) {
+        ApiData data = new ApiData();
+        data.date = date.atTime(hour, 0);
+        data.interval = 60;
+        data.price = hour;
+        data.usage = 10;
+        data.temperatureMean = 2.0;
+        dataList.add(data);
+      }
+    }
+    return dataList;
+  }
+
+  /**
+   * Tests that days are rolled up with mean, min and max price and summed usage.
+   */
+  public void testDailyRollup() {
+    RollupStore store = new RollupStore(CLOCK);
+    LocalDate day = LocalDate.of(2024, 3, 1);
+    store.ingest("Finland", hourly(day, day));
+
+    // Assert: Day has the aggregated values and is complete
+    List<ApiData> daily = store.getDaily("Finland", day, day.plusDays(1));
+    assertEquals(2, daily.size());
+    assertEquals(11.5, daily.get(0).price, 1e-9);
+    assertEquals(240.0, daily.get(0).usage, 1e-9);
+    assertEquals(2.0, daily.get(0).temperatureMean, 1e-9);
+    assertTrue("Missing day has no usage", Double.isNaN(daily.get(1).usage));
+    assertTrue("Missing day has no price", Double.isNaN(daily.get(1).price));
+    assertNull("Missing day has no temperature", daily.get(1).temperatureMean);
+    assertTrue(store.hasDays("Finland", day, day));
+    assertFalse(store.hasDays("Finland", day, day.plusDays(1)));
+
+    RollupStore.Rollup rollup = store.summarize("Finland", day, day);
+    assertEquals(0.0, rollup.getMinPrice(), 1e-9);
+    assertEquals(23.0, rollup.getMaxPrice(), 1e-9);
+  }
+
+  /**
+   * Tests that a day missing an hour is kept but not complete.
+   */
+  public void testMissingHourIsNotComplete() {
+    RollupStore store = new RollupStore(CLOCK);
+    LocalDate day = LocalDate.of(2024, 3, 1);
+    store.ingest("Finland", hourly(day, day).subList(0, 23));
+
+    // Assert: The day is readable but will be fetched again
+    assertFalse(store.hasDays("Finland", day, day));
+    assertEquals(230.0, store.getDaily("Finland", day, day).get(0).usage, 1e-9);
+  }
+
+  /**
+   * Tests that a month is stored once all of its days are complete, and not before.
+   */
+  public void testMonthRollup() {
+    RollupStore store = new RollupStore(CLOCK);
+    store.ingest("Finland", hourly(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 28)));
+
+    // Assert: February is missing a day
+    assertNull(store.getMonth("Finland", YearMonth.of(2024, 2)));
+
+    store.ingest("Finland", hourly(LocalDate.of(2024, 2, 29), LocalDate.of(2024, 2, 29)));
+    RollupStore.Rollup february = store.getMonth("Finland", YearMonth.of(2024, 2));
+
+    // Assert: February is complete and summed over every day
+    assertNotNull(february);
+    assertEquals(29 * 240.0, february.getUsage(), 1e-9);
+    assertEquals(11.5, february.getMeanPrice(), 1e-9);
+    assertNull("Other countries are kept apart", store.getMonth("Sweden", YearMonth.of(2024, 2)));
+  }
+
+  /**
+   * Tests that a stored month follows a replaced day.
+   */
+  public void testReplacedDayUpdatesMonth() {
+    RollupStore store = new RollupStore(CLOCK);
+    store.ingest("Finland", hourly(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29)));
+    List<ApiData> revised = hourly(LocalDate.of(2024, 2, 10), LocalDate.of(2024, 2, 10));
+    revised.forEach(data -> data.usage = 20);
+    store.ingest("Finland", revised);
+
+    // Assert: February includes the revised usage of the day
+    assertEquals(28 * 240.0 + 480.0,
+        store.getMonth("Finland", YearMonth.of(2024, 2)).getUsage(), 1e-9);
+
+    // Assert: A day replaced with partial data takes the month out of the store
+    store.ingest("Finland", hourly(LocalDate.of(2024, 2, 10), LocalDate.of(2024, 2, 10))
+        .subList(0, 12));
+    assertNull(store.getMonth("Finland", YearMonth.of(2024, 2)));
+  }
+
+  /**
+   * Tests that the month price of a country with several zones is weighted by zone usage.
+   */
+  public void testMergedZonesWeightMonthPrice() {
+    RollupStore store = new RollupStore(CLOCK);
+    LocalDate from = LocalDate.of(2024, 2, 1);
+    LocalDate to = LocalDate.of(2024, 2, 29);
+    List<ApiData> north = hourly(from, to);
+    north.forEach(data -> data.price = 10);
+    List<ApiData> south = hourly(from, to);
+    south.forEach(data -> {
+      data.price = 40;
+      data.usage = 30;
+    });
+    Aggregator buckets = Aggregator.days(from, to);
+    store.ingest("Sweden", buckets.aggregate(north).mergeZone(buckets.aggregate(south)));
+
+    // Assert: (10 * 10 + 40 * 30) / 40 instead of the plain mean 25
+    RollupStore.Rollup february = store.getMonth("Sweden", YearMonth.of(2024, 2));
+    assertEquals(32.5, february.getMeanPrice(), 1e-9);
+    assertEquals(32.5, store.getDaily("Sweden", from, from).get(0).price, 1e-9);
+  }
+
+  /**
+   * Tests that days reaching today are never complete.
+   */
+  public void testTodayIsNotComplete() {
+    RollupStore store = new RollupStore(CLOCK);
+    LocalDate today = LocalDate.of(2024, 3, 15);
+    store.ingest("Finland", hourly(today, today));
+
+    // Assert: Today's data is readable but will be fetched again
+    assertFalse(store.hasDays("Finland", today, today));
+    assertEquals(240.0, store.getDaily("Finland", today, today).get(0).usage, 1e-9);
+    assertNull(store.getMonth("Finland", YearMonth.of(2024, 3)));
+  }
+}
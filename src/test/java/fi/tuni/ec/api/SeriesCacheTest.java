@@ -0,0 +1,115 @@
+package fi.tuni.ec.api;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing SeriesCache.
+ */
+public class SeriesCacheTest extends TestCase {
+
+  /**
+   * Clock that only moves when told to.
+   */
+  private static class MutableClock extends Clock {
+    private Instant now = Instant.parse("2024-03-01T12:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+
+  private static TimeSeries series(int size) {
+    return new TimeSeries(0, 60, size);
+  }
+
+  /**
+   * Tests that hits and misses are counted.
+   */
+  public void testHitsAndMisses() {
+    SeriesCache cache = new SeriesCache(1 << 20, Duration.ofMinutes(5), Clock.systemUTC());
+    TimeSeries series = series(24);
+
+    assertNull(cache.get("a"));
+    cache.put("a", series, false);
+
+    assertSame(series, cache.get("a"));
+    assertSame(series, cache.get("a"));
+    assertEquals(2, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  /**
+   * Tests that the least recently used series are evicted once the size limit is reached.
+   */
+  public void testEvictsByBytes() {
+    long entryBytes = series(1000).estimatedBytes();
+    // Room for two series but not three
+    SeriesCache cache = new SeriesCache(
+        entryBytes * 2 + 1000, Duration.ofMinutes(5), Clock.systemUTC());
+
+    cache.put("a", series(1000), false);
+    cache.put("b", series(1000), false);
+    cache.get("a");
+    cache.put("c", series(1000), false);
+
+    // Assert: b was used least recently
+    assertNotNull(cache.get("a"));
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("c"));
+    assertTrue(cache.size() <= cache.getMaxBytes());
+
+    // Assert: A small series takes less room than a large one
+    cache.put("d", series(10), false);
+    assertEquals(3, cache.count());
+  }
+
+  /**
+   * Tests that series of live periods expire and others do not.
+   */
+  public void testLiveExpiry() {
+    MutableClock clock = new MutableClock();
+    SeriesCache cache = new SeriesCache(1 << 20, Duration.ofMinutes(5), clock);
+    cache.put("past", series(24), false);
+    cache.put("today", series(24), true);
+
+    clock.advance(Duration.ofMinutes(6));
+
+    assertNotNull(cache.get("past"));
+    assertNull(cache.get("today"));
+    assertEquals(1, cache.count());
+  }
+
+  /**
+   * Tests that trimming releases entries down to the given size.
+   */
+  public void testTrim() {
+    SeriesCache cache = new SeriesCache(1 << 20, Duration.ofMinutes(5), Clock.systemUTC());
+    cache.put("a", series(100), false);
+    cache.put("b", series(100), false);
+
+    cache.trimTo(0);
+
+    assertEquals(0, cache.count());
+    assertEquals(0, cache.size());
+  }
+}
@@ -0,0 +1,172 @@
+package fi.tuni.ec.api;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing SeriesMerger.
+ */
+public class SeriesMergerTest extends TestCase {
+
+  private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+  private static ApiData price(int minutes, double value) {
+    ApiData data = new ApiData();
+    data.date = START.plusMinutes(minutes);
+    data.price = value;
+    data.interval = 60;
+    return data;
+  }
+
+  private static ApiData usage(int minutes, double value) {
+    ApiData data = new ApiData();
+    data.date = START.plusMinutes(minutes);
+    data.usage = value;
+    data.interval = 15;
+    return data;
+  }
+
+  // Two hours of quarter-hourly usage: 100..103 and 200..203
+  private static List<ApiData> quarterHourUsage() {
+    List<ApiData> usageData = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      usageData.add(usage(i * 15, (i < 4 ? 100 : 200) + i % 4));
+    }
+    return usageData;
+  }
+
+  /**
+   * Tests that PT15M load is resampled onto PT60M prices.
+   */
+  public void testMixedResolution() {
+    List<ApiData> priceData = List.of(price(0, 10.0), price(60, 20.0));
+
+    TimeSeries mean = SeriesMerger.merge(
+        priceData, quarterHourUsage(), SeriesMerger.LoadResampling.MEAN);
+    TimeSeries sum = SeriesMerger.merge(
+        priceData, quarterHourUsage(), SeriesMerger.LoadResampling.SUM);
+
+    // Assert: Result is hourly and each hour has its own price
+    assertEquals(60, mean.getStepMinutes());
+    assertEquals(2, mean.size());
+    assertEquals(10.0, mean.getPrice()[0]);
+    assertEquals(20.0, mean.getPrice()[1]);
+
+    // Assert: Load is averaged or summed within the hour
+    assertEquals(101.5, mean.getUsage()[0]);
+    assertEquals(201.5, mean.getUsage()[1]);
+    assertEquals(406.0, sum.getUsage()[0]);
+    assertEquals(806.0, sum.getUsage()[1]);
+  }
+
+  /**
+   * Tests that a missing price hour does not shift the remaining data.
+   */
+  public void testGap() {
+    List<ApiData> priceData = List.of(price(0, 10.0), price(120, 30.0));
+    List<ApiData> usageData = List.of(usage(0, 1.0), usage(60, 2.0), usage(120, 3.0));
+    usageData.forEach(data -> data.interval = 60);
+
+    TimeSeries series = SeriesMerger.merge(
+        priceData, usageData, SeriesMerger.LoadResampling.MEAN);
+
+    // Assert: All hours are kept and the missing price is NaN
+    assertEquals(3, series.size());
+    assertTrue(Double.isNaN(series.getPrice()[1]));
+    assertEquals(2.0, series.getUsage()[1]);
+    assertEquals(30.0, series.getPrice()[2]);
+    assertEquals(3.0, series.getUsage()[2]);
+  }
+
+  /**
+   * Tests that zones are merged with summed load and load-weighted price.
+   */
+  public void testMergeZones() {
+    long start = TimeSeries.toEpochMinute(START);
+    TimeSeries north = new TimeSeries(start, 60, 2);
+    north.getPrice()[0] = 10.0;
+    north.getUsage()[0] = 100.0;
+    north.getPrice()[1] = 10.0;
+    north.getUsage()[1] = 100.0;
+
+    // Quarter-hourly zone starting an hour later
+    TimeSeries south = new TimeSeries(start + 60, 15, 4);
+    for (int i = 0; i < 4; i++) {
+      south.getPrice()[i] = 40.0;
+      south.getUsage()[i] = 300.0;
+    }
+
+    TimeSeries country = SeriesMerger.mergeZones(
+        List.of(north, south), SeriesMerger.LoadResampling.MEAN);
+
+    // Assert: Hourly grid covering both zones
+    assertEquals(60, country.getStepMinutes());
+    assertEquals(2, country.size());
+
+    // Assert: First hour only has the north zone
+    assertEquals(10.0, country.getPrice()[0]);
+    assertEquals(100.0, country.getUsage()[0]);
+
+    // Assert: Second hour sums load and weights price by load
+    assertEquals(400.0, country.getUsage()[1]);
+    assertEquals((10.0 * 100 + 40.0 * 300) / 400, country.getPrice()[1], 1e-9);
+  }
+
+  /**
+   * Tests that with SUM the load of a quarter-hourly zone is summed into hourly energy before
+   * it is added to an hourly zone and used as the weight of its price.
+   */
+  public void testMergeZonesSumsFinerLoad() {
+    long start = TimeSeries.toEpochMinute(START);
+    TimeSeries north = new TimeSeries(start, 60, 1);
+    north.getPrice()[0] = 10.0;
+    north.getUsage()[0] = 400.0;
+    TimeSeries south = new TimeSeries(start, 15, 4);
+    for (int i = 0; i < 4; i++) {
+      south.getPrice()[i] = 40.0;
+      south.getUsage()[i] = 100.0 + i;
+    }
+
+    TimeSeries sum = SeriesMerger.mergeZones(
+        List.of(north, south), SeriesMerger.LoadResampling.SUM);
+    TimeSeries mean = SeriesMerger.mergeZones(
+        List.of(north, south), SeriesMerger.LoadResampling.MEAN);
+
+    // Assert: South contributes 406 with SUM and 101.5 with MEAN
+    assertEquals(60, sum.getStepMinutes());
+    assertEquals(806.0, sum.getUsage()[0], 1e-9);
+    assertEquals((10.0 * 400 + 40.0 * 406) / 806, sum.getPrice()[0], 1e-9);
+    assertEquals(501.5, mean.getUsage()[0], 1e-9);
+  }
+
+  /**
+   * Tests that an empty side does not set the step of the other side.
+   */
+  public void testEmptySideKeepsStep() {
+    TimeSeries series = SeriesMerger.merge(
+        List.of(), quarterHourUsage(), SeriesMerger.LoadResampling.SUM);
+
+    // Assert: Usage keeps its quarter-hour resolution
+    assertEquals(15, series.getStepMinutes());
+    assertEquals(8, series.size());
+    assertEquals(100.0, series.getUsage()[0]);
+    assertTrue(Double.isNaN(series.getPrice()[0]));
+  }
+
+  /**
+   * Tests that points repeated in overlapping documents are counted once.
+   */
+  public void testDuplicatesCountedOnce() {
+    List<ApiData> usageData = quarterHourUsage();
+    usageData.addAll(quarterHourUsage().subList(2, 6));
+
+    TimeSeries sum = SeriesMerger.merge(
+        List.of(price(0, 10.0), price(60, 20.0)), usageData, SeriesMerger.LoadResampling.SUM);
+
+    // Assert: Each hour sums its four quarters only once
+    assertEquals(406.0, sum.getUsage()[0]);
+    assertEquals(806.0, sum.getUsage()[1]);
+  }
+}
@@ -0,0 +1,165 @@
+package fi.tuni.ec.api;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing SeriesStore.
+ */
+public class SeriesStoreTest extends TestCase {
+
+  private static final String AREA = "10YFI-1--------U";
+  private static final Clock CLOCK = Clock.fixed(
+      Instant.parse("2024-10-15T12:00:00Z"), ZoneOffset.UTC);
+
+  private Path directory;
+
+  /**
+   * Creates a temporary store directory for each test.
+   *
+   * @throws Exception if the directory cannot be created.
+   */
+  protected void setUp() throws Exception {
+    super.setUp();
+    directory = Files.createTempDirectory("seriesStoreTest");
+  }
+
+  /**
+   * Removes the store directory after each test.
+   *
+   * @throws Exception if an error occurs.
+   */
+  protected void tearDown() throws Exception {
+    super.tearDown();
+    File[] files = directory.toFile().listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.toFile().delete();
+  }
+
+  // Hourly points of a period with the value equal to the hour index
+  private static List<SeriesStore.Point> hourly(long fromMinute, int hours, double offset) {
+    List<SeriesStore.Point> points = new ArrayList<>();
+    for (int i = 0; i < hours; i++) {
+      points.add(new SeriesStore.Point(fromMinute + 60L * i, 60, i + offset));
+    }
+    return points;
+  }
+
+  /**
+   * Tests that a stored range is read back and survives a restart.
+   */
+  public void testAppendAndRead() {
+    SeriesStore store = new SeriesStore(directory, CLOCK);
+    long from = SeriesStore.toMinute("202401010000");
+    store.append(AREA, "price", from, from + 48 * 60, hourly(from, 48, 0));
+
+    // Assert: A sub-range is read with a seek and in order
+    List<SeriesStore.Point> points = store.read(AREA, "price", from + 600, from + 1200);
+    assertEquals(10, points.size());
+    assertEquals(10.0, points.getFirst().getValue());
+    assertEquals(from + 600, points.getFirst().getMinute());
+
+    // Assert: Other metrics and uncovered ranges are not served
+    assertNull(store.read(AREA, "usage", from, from + 60));
+    assertNull(store.read(AREA, "price", from, from + 49 * 60));
+
+    // Assert: A new store over the same directory has the data
+    SeriesStore reopened = new SeriesStore(directory, CLOCK);
+    assertEquals(48, reopened.read(AREA, "price", from, from + 48 * 60).size());
+  }
+
+  /**
+   * Tests that adjacent blocks cover a range together and later blocks win.
+   */
+  public void testBlocksCombine() {
+    SeriesStore store = new SeriesStore(directory, CLOCK);
+    long from = SeriesStore.toMinute("202401010000");
+    store.append(AREA, "price", from, from + 24 * 60, hourly(from, 24, 0));
+    store.append(AREA, "price", from + 12 * 60, from + 36 * 60, hourly(from + 12 * 60, 24, 100));
+
+    // Assert: The range is covered by both blocks and overlapping points come from the latest
+    List<SeriesStore.Point> points = store.read(AREA, "price", from, from + 36 * 60);
+    assertEquals(36, points.size());
+    assertEquals(11.0, points.get(11).getValue());
+    assertEquals(100.0, points.get(12).getValue());
+  }
+
+  /**
+   * Tests that only the time spanned by the points is marked as stored, so an empty or short
+   * fetch is fetched again and a later complete fetch fills the gap.
+   */
+  public void testCoversOnlyReceivedPoints() {
+    SeriesStore store = new SeriesStore(directory, CLOCK);
+    long from = SeriesStore.toMinute("202401010000");
+
+    // An empty response, e.g. an acknowledgement without data
+    store.append(AREA, "usage", from, from + 24 * 60, List.of());
+    assertFalse(store.covers(AREA, "usage", from, from + 60));
+
+    // Only the first half of the day was published
+    store.append(AREA, "usage", from, from + 24 * 60, hourly(from, 12, 0));
+    List<long[]> missing = store.missing(AREA, "usage", from, from + 24 * 60);
+    assertEquals(1, missing.size());
+    assertEquals(from + 12 * 60, missing.getFirst()[0]);
+    assertEquals(from + 24 * 60, missing.getFirst()[1]);
+
+    // The refetch returns the whole day
+    store.append(AREA, "usage", from, from + 24 * 60, hourly(from, 24, 0));
+    assertEquals(24, store.read(AREA, "usage", from, from + 24 * 60).size());
+
+    // Assert: A hole inside the points stays missing
+    List<SeriesStore.Point> holed = hourly(from + 24 * 60, 24, 0);
+    holed.remove(5);
+    store.append(AREA, "price", from + 24 * 60, from + 48 * 60, holed);
+    assertEquals(1, store.missing(AREA, "price", from + 24 * 60, from + 48 * 60).size());
+    assertTrue(store.covers(AREA, "price", from + 30 * 60, from + 48 * 60));
+  }
+
+  /**
+   * Tests that nothing from today onwards is stored.
+   */
+  public void testTodayIsNotStored() {
+    SeriesStore store = new SeriesStore(directory, CLOCK);
+    long from = SeriesStore.toMinute("202410140000");
+    store.append(AREA, "price", from, from + 48 * 60, hourly(from, 48, 0));
+
+    // Assert: Yesterday is stored, today is not
+    assertTrue(store.covers(AREA, "price", from, from + 24 * 60));
+    assertFalse(store.covers(AREA, "price", from, from + 25 * 60));
+  }
+
+  /**
+   * Tests that a block cut short is dropped when the store is opened.
+   *
+   * @throws Exception if the segment cannot be modified.
+   */
+  public void testTruncatedBlock() throws Exception {
+    SeriesStore store = new SeriesStore(directory, CLOCK);
+    long from = SeriesStore.toMinute("202401010000");
+    store.append(AREA, "price", from, from + 24 * 60, hourly(from, 24, 0));
+    store.append(AREA, "price", from + 24 * 60, from + 48 * 60, hourly(from + 24 * 60, 24, 0));
+
+    // Cut the last record of the second block
+    File segment = directory.toFile().listFiles()[0];
+    try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+      file.setLength(file.length() - 10);
+    }
+
+    // Assert: The first block is kept, the broken one is gone
+    SeriesStore reopened = new SeriesStore(directory, CLOCK);
+    assertTrue(reopened.covers(AREA, "price", from, from + 24 * 60));
+    assertFalse(reopened.covers(AREA, "price", from, from + 48 * 60));
+  }
+}
@@ -0,0 +1,101 @@
+package fi.tuni.ec.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing SingleFlight.
+ */
+public class SingleFlightTest extends TestCase {
+
+  /**
+   * Tests that concurrent calls for the same key run the loader once.
+   */
+  public void testConcurrentCallsShareOneLoad() throws Exception {
+    SingleFlight<String, Integer> flights = new SingleFlight<>();
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        results.add(executor.submit(() -> flights.run("key", () -> {
+          loads.incrementAndGet();
+          release.await();
+          return 42;
+        })));
+      }
+      // Wait until the leader is in flight, then give the others time to join it
+      while (flights.inFlightCount() == 0) {
+        Thread.sleep(5);
+      }
+      Thread.sleep(100);
+      release.countDown();
+
+      for (Future<Integer> result : results) {
+        assertEquals(Integer.valueOf(42), result.get(5, TimeUnit.SECONDS));
+      }
+      assertEquals("The loader should run once", 1, loads.get());
+      assertEquals(0, flights.inFlightCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Tests that the key is forgotten once the call finishes.
+   */
+  public void testSequentialCallsLoadAgain() throws Exception {
+    SingleFlight<String, Integer> flights = new SingleFlight<>();
+    AtomicInteger loads = new AtomicInteger();
+
+    flights.run("key", loads::incrementAndGet);
+    flights.run("key", loads::incrementAndGet);
+
+    assertEquals(2, loads.get());
+  }
+
+  /**
+   * Tests that a failure of the loader reaches every waiting caller.
+   */
+  public void testFailureReachesAllCallers() throws Exception {
+    SingleFlight<String, Integer> flights = new SingleFlight<>();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        results.add(executor.submit(() -> flights.run("key", () -> {
+          release.await();
+          throw new IOException("HTTP 503");
+        })));
+      }
+      while (flights.inFlightCount() == 0) {
+        Thread.sleep(5);
+      }
+      Thread.sleep(100);
+      release.countDown();
+
+      for (Future<Integer> result : results) {
+        try {
+          result.get(5, TimeUnit.SECONDS);
+          fail("Expected the failure of the loader");
+        } catch (ExecutionException e) {
+          assertTrue(e.getCause() instanceof IOException);
+          assertEquals("HTTP 503", e.getCause().getMessage());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package fi.tuni.ec.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing TemperatureClient against a local server.
+ */
+public class TemperatureClientTest extends TestCase {
+
+  private static final TemperatureClient.Location HELSINKI =
+      new TemperatureClient.Location(60.17, 24.94, "Europe/Helsinki");
+  private static final TemperatureClient.Location BERLIN =
+      new TemperatureClient.Location(52.52, 13.40, "Europe/Berlin");
+
+  private HttpServer server;
+  private final AtomicInteger archiveRequests = new AtomicInteger();
+  private final AtomicInteger forecastRequests = new AtomicInteger();
+  private TemperatureClient client;
+
+  @Override
+  protected void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    // Archive: mean of location i is i + 1, the archive has nothing from 2024-03-09 on
+    server.createContext("/archive", exchange -> {
+      archiveRequests.incrementAndGet();
+      respond(exchange, exchange.getRequestURI().getQuery(), LocalDate.of(2024, 3, 9), 1);
+    });
+    // Forecast: mean of location i is 10 * (i + 1)
+    server.createContext("/forecast", exchange -> {
+      forecastRequests.incrementAndGet();
+      respond(exchange, exchange.getRequestURI().getQuery(), LocalDate.MAX, 10);
+    });
+    server.start();
+
+    String base = "http://127.0.0.1:" + server.getAddress().getPort();
+    Clock clock = Clock.fixed(Instant.parse("2024-03-10T12:00:00Z"), ZoneOffset.UTC);
+    client = new TemperatureClient(
+        new HttpTransport.Builder().build(),
+        List.of(HELSINKI, BERLIN),
+        Duration.ofMinutes(15),
+        clock,
+        base + "/archive",
+        base + "/forecast");
+  }
+
+  @Override
+  protected void tearDown() {
+    server.stop(0);
+  }
+
+  private static void respond(
+      HttpExchange exchange,
+      String query,
+      LocalDate missingFrom,
+      double scale) throws IOException {
+    Map<String, String> params = new HashMap<>();
+    for (String param : query.split("&")) {
+      String[] pair = param.split("=", 2);
+      params.putIfAbsent(pair[0], pair[1]);
+    }
+    LocalDate start = LocalDate.parse(params.get("start_date"));
+    LocalDate end = LocalDate.parse(params.get("end_date"));
+    int locations = params.get("latitude").split(",").length;
+
+    JsonArray results = new JsonArray();
+    for (int i = 0; i < locations; i++) {
+      if (query.contains("hourly=temperature_2m")) {
+        results.add(hourlyResult(start, end, missingFrom, scale * (i + 1)));
+        continue;
+      }
+      JsonArray time = new JsonArray();
+      JsonArray min = new JsonArray();
+      JsonArray max = new JsonArray();
+      for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+        time.add(date.toString());
+        if (date.isBefore(missingFrom)) {
+          min.add(0);
+          max.add(2 * scale * (i + 1));
+        } else {
+          min.add(JsonNull.INSTANCE);
+          max.add(JsonNull.INSTANCE);
+        }
+      }
+      JsonObject daily = new JsonObject();
+      daily.add("time", time);
+      daily.add("temperature_2m_min", min);
+      daily.add("temperature_2m_max", max);
+      JsonObject result = new JsonObject();
+      result.add("daily", daily);
+      results.add(result);
+    }
+
+    byte[] body = (locations == 1 ? results.get(0) : results).toString()
+        .getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  // Temperature of hour h is scale * h, the archive has nothing from noon of missingFrom on
+  private static JsonObject hourlyResult(
+      LocalDate start,
+      LocalDate end,
+      LocalDate missingFrom,
+      double scale) {
+    JsonArray time = new JsonArray();
+    JsonArray temperature = new JsonArray();
+    for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+      for (int hour = 0; hour < 24; hour++) {
+        time.add(date.atTime(hour, 0).toString());
+        if (date.isBefore(missingFrom) || date.equals(missingFrom) && hour < 12) {
+          temperature.add(scale * hour);
+        } else {
+          temperature.add(JsonNull.INSTANCE);
+        }
+      }
+    }
+    JsonObject hourly = new JsonObject();
+    hourly.add("time", time);
+    hourly.add("temperature_2m", temperature);
+    JsonObject result = new JsonObject();
+    result.add("hourly", hourly);
+    return result;
+  }
+
+  /**
+   * Tests that every known location is fetched in one request and then served from the cache.
+   */
+  public void testBatchesLocations() throws Exception {
+    Map<String, Double> helsinki =
+        client.fetch(HELSINKI, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 5));
+    Map<String, Double> berlin =
+        client.fetch(BERLIN, LocalDate.of(2024, 3, 2), LocalDate.of(2024, 3, 4));
+
+    assertEquals(5, helsinki.size());
+    assertEquals(1.0, helsinki.get("2024-03-01"), 1e-9);
+    assertEquals(3, berlin.size());
+    assertEquals(2.0, berlin.get("2024-03-02"), 1e-9);
+    // Assert: Berlin was fetched along with Helsinki
+    assertEquals(1, archiveRequests.get());
+    assertEquals(0, forecastRequests.get());
+    assertEquals(1, client.getRequests());
+  }
+
+  /**
+   * Tests that days missing from the archive and today come from the forecast.
+   */
+  public void testMergesArchiveAndForecast() throws Exception {
+    Map<TemperatureClient.Location, Map<String, Double>> temperatures = client.fetchAll(
+        List.of(HELSINKI, BERLIN), LocalDate.of(2024, 3, 7), LocalDate.of(2024, 3, 10));
+
+    Map<String, Double> helsinki = temperatures.get(HELSINKI);
+    assertEquals(1.0, helsinki.get("2024-03-08"), 1e-9);
+    // Assert: The archive had no value for yesterday, the forecast filled it and today
+    assertEquals(10.0, helsinki.get("2024-03-09"), 1e-9);
+    assertEquals(10.0, helsinki.get("2024-03-10"), 1e-9);
+    assertEquals(20.0, temperatures.get(BERLIN).get("2024-03-10"), 1e-9);
+    assertEquals(1, archiveRequests.get());
+    assertEquals(1, forecastRequests.get());
+
+    // Assert: Within the TTL nothing is fetched again
+    client.fetch(BERLIN, LocalDate.of(2024, 3, 7), LocalDate.of(2024, 3, 10));
+    assertEquals(2, client.getRequests());
+  }
+
+  /**
+   * Tests that hourly temperatures are indexed by hour and partly missing days are filled in
+   * from the forecast.
+   */
+  public void testHourly() throws Exception {
+    HourlyTemperature hourly =
+        client.fetchHourly(HELSINKI, LocalDate.of(2024, 3, 8), LocalDate.of(2024, 3, 9));
+
+    assertEquals(48, hourly.size());
+    assertEquals(LocalDate.of(2024, 3, 8).toEpochDay() * 1440, hourly.getStartMinute());
+    assertEquals(5.0, hourly.getValues()[5], 1e-9);
+    // Assert: The archive ends at noon of the last day, the forecast filled the rest
+    assertEquals(11.0, hourly.getValues()[24 + 11], 1e-9);
+    assertEquals(120.0, hourly.getValues()[24 + 12], 1e-9);
+    assertEquals(1, archiveRequests.get());
+    assertEquals(1, forecastRequests.get());
+
+    // Assert: Daily and hourly temperatures are cached apart, Berlin came along in UTC
+    client.fetchHourly(BERLIN, LocalDate.of(2024, 3, 8), LocalDate.of(2024, 3, 8));
+    assertEquals(2, client.getRequests());
+  }
+}
@@ -0,0 +1,67 @@
+package fi.tuni.ec.api;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing TimeSeries.
+ */
+public class TimeSeriesTest extends TestCase {
+
+  private static ApiData point(LocalDateTime date, double price, double usage, Double temp) {
+    ApiData data = new ApiData();
+    data.date = date;
+    data.price = price;
+    data.usage = usage;
+    data.temperatureMean = temp;
+    data.interval = 60;
+    return data;
+  }
+
+  /**
+   * Tests conversion from ApiData, including a missing hour.
+   */
+  public void testFromApiData() {
+    LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+    List<ApiData> dataList = new ArrayList<>();
+    dataList.add(point(start, 10.0, 500.0, 1.5));
+    dataList.add(point(start.plusHours(1), 11.0, 510.0, null));
+    dataList.add(point(start.plusHours(3), 13.0, 530.0, 2.5));
+
+    TimeSeries series = TimeSeries.fromApiData(dataList);
+
+    // Assert: Grid spans the whole range with an hourly step
+    assertEquals(4, series.size());
+    assertEquals(60, series.getStepMinutes());
+    assertEquals(start, series.timeAt(0));
+    assertEquals(start.plusHours(3), series.timeAt(3));
+
+    // Assert: Values are in place and missing values are NaN
+    assertEquals(11.0, series.getPrice()[1]);
+    assertEquals(530.0, series.getUsage()[3]);
+    assertTrue(Double.isNaN(series.getPrice()[2]));
+    assertTrue(Double.isNaN(series.getTemperature()[1]));
+    assertEquals(3, series.indexOf(TimeSeries.toEpochMinute(start.plusHours(3))));
+  }
+
+  /**
+   * Tests conversion back to ApiData.
+   */
+  public void testToApiData() {
+    LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+    List<ApiData> dataList = List.of(
+        point(start, 10.0, 500.0, 1.5),
+        point(start.plusHours(2), 12.0, 520.0, null));
+
+    List<ApiData> result = TimeSeries.fromApiData(dataList).toApiData();
+
+    // Assert: Missing hour is skipped and values round trip
+    assertEquals(2, result.size());
+    assertEquals(start.plusHours(2), result.get(1).date);
+    assertEquals(520.0, result.get(1).usage);
+    assertEquals(1.5, result.get(0).temperatureMean);
+    assertNull(result.get(1).temperatureMean);
+  }
+}
@@ -0,0 +1,95 @@
+package fi.tuni.ec.backend;
+
+import fi.tuni.ec.api.Aggregator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ * This class is used for testing BatchRunner without the network.
+ */
+public class BatchRunnerTest extends TestCase {
+
+  /**
+   * Tests that saved query parameters are turned into the days of their period.
+   */
+  public void testParseQuery() {
+    LocalDate date = LocalDate.of(2024, 3, 13);
+
+    BatchRunner.Query week = BatchRunner.Query.parse("w", "Finland;2024-03-13;WEEK", date);
+    BatchRunner.Query year = BatchRunner.Query.parse("y", "Finland;2024-03-13;YEAR", date);
+    BatchRunner.Query day = BatchRunner.Query.parse("d", "Sweden", LocalDate.of(2024, 3, 1));
+
+    assertEquals(LocalDate.of(2024, 3, 11), week.getFrom());
+    assertEquals(LocalDate.of(2024, 3, 17), week.getTo());
+    assertEquals(LocalDate.of(2024, 12, 31), year.getTo());
+    // Assert: A query saved without a date is the day it is run for
+    assertEquals("Sweden", day.getCountry());
+    assertEquals(LocalDate.of(2024, 3, 1), day.getFrom());
+    assertEquals(LocalDate.of(2024, 3, 1), day.getTo());
+    try {
+      BatchRunner.Query.parse("x", "Finland;2024-03-13;DECADE", date);
+      fail("Unknown period type accepted");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Tests that queries are loaded from a query file in name order.
+   */
+  public void testLoadQueries() throws IOException {
+    File file = File.createTempFile("batchQueries", ".csv");
+    file.deleteOnExit();
+    // Let the handler create the file with its header
+    file.delete();
+    QueryHandler handler = new QueryHandler(file.getPath());
+    handler.saveQuery("b", "2024-03-13", "Finland;2024-03-01;MONTH");
+    handler.saveQuery("a", "2024-03-13", "Sweden");
+
+    List<BatchRunner.Query> queries =
+        BatchRunner.loadQueries(new QueryHandler(file.getPath()), LocalDate.of(2024, 3, 13));
+
+    assertEquals(2, queries.size());
+    assertEquals("a", queries.get(0).getName());
+    assertEquals("MONTH", queries.get(1).getType());
+    assertEquals(LocalDate.of(2024, 3, 31), queries.get(1).getTo());
+  }
+
+  /**
+   * Tests that aggregates are written per query, periods are cut at today and failures are
+   * counted without stopping the other queries.
+   */
+  public void testRunExports() throws Exception {
+    Path out = Files.createTempDirectory("batch-test");
+    AtomicInteger buckets = new AtomicInteger();
+    BatchRunner runner = new BatchRunner((country, periodStart, periodEnd, aggregator) -> {
+      if (country.equals("Nowhere")) {
+        throw new IOException("No data");
+      }
+      assertEquals("202403010000", periodStart);
+      assertEquals("202403132300", periodEnd);
+      buckets.set(aggregator.size());
+      Aggregator.Aggregates aggregates = aggregator.newAggregates();
+      aggregates.addPrice(aggregator.startOf(1), 60, 5.0);
+      return aggregates;
+    }, out, 2, LocalDate.of(2024, 3, 13));
+
+    int failed = runner.run(List.of(
+        new BatchRunner.Query("fi month", "Finland", "MONTH", LocalDate.of(2024, 3, 13)),
+        new BatchRunner.Query("none", "Nowhere", "DAY", LocalDate.of(2024, 3, 13))));
+
+    assertEquals(1, failed);
+    // Assert: One daily bucket up to today, only buckets with data are written
+    assertEquals(13, buckets.get());
+    List<String> lines = Files.readAllLines(out.resolve("fi_month.csv"));
+    assertEquals(2, lines.size());
+    assertTrue(lines.get(1).startsWith("2024-03-02T00:00Z,5.0,5.0,5.0,"));
+    assertFalse(Files.exists(out.resolve("none.csv")));
+  }
+}